@@ -6,9 +6,9 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Intro：定闹钟
@@ -22,30 +22,79 @@ public class AlarmClockManager {
      *
      * @param id   闹钟id
      * @param time 闹钟时间
-     *             格式 yyyy-MM-dd HH:mm
+     *             格式 yyyy-MM-dd HH:mm，按默认时区解析
      * @param context 上下文
      * @param intent 事件
-     * @param repeatTime 重复时间（仅适用于Android4.4以下）
+     * @param repeatTime 重复时间（仅适用于Android4.4以下，4.4及以上使用{@link #setRecurringAlarmClock}）
+     * @throws AlarmTimeFormatException 时间格式错误
      */
     public static void setAlarmClock(int id, String time, Context context,Intent intent,long repeatTime) {
+        setAlarmClock(id, AlarmTimeParser.parse(time, TimeZone.getDefault()), context, intent, repeatTime);
+    }
+
+
+    /**
+     * 设置一个某个时间点的闹钟，按指定时区解析时间
+     *
+     * @param time 格式 yyyy-MM-dd HH:mm
+     * @param zone 时区
+     * @throws AlarmTimeFormatException 时间格式错误
+     */
+    public static void setAlarmClock(int id, String time, TimeZone zone, Context context, Intent intent, long repeatTime) {
+        setAlarmClock(id, AlarmTimeParser.parse(time, zone), context, intent, repeatTime);
+    }
+
+
+    /**
+     * 设置一个某个时间点的闹钟
+     *
+     * @param calendar 闹钟时间
+     */
+    public static void setAlarmClock(int id, Calendar calendar, Context context, Intent intent, long repeatTime) {
+        setAlarmClock(id, calendar.getTimeInMillis(), context, intent, repeatTime);
+    }
+
+
+    /**
+     * 设置一个某个时间点的闹钟
+     *
+     * @param repeatTime 重复时间（仅适用于Android4.4以下）
+     * @param unit       repeatTime的单位
+     */
+    public static void setAlarmClock(int id, long triggerAtMillis, Context context, Intent intent, long repeatTime, TimeUnit unit) {
+        setAlarmClock(id, triggerAtMillis, context, intent, unit.toMillis(repeatTime));
+    }
+
+
+    /**
+     * 设置一个某个时间点的闹钟
+     *
+     * @param triggerAtMillis 闹钟时间（RTC，毫秒）
+     */
+    public static void setAlarmClock(int id, long triggerAtMillis, Context context, Intent intent, long repeatTime) {
         PendingIntent pendingIntent = PendingIntent.getService(context, id, intent, 0);
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        long times = 0L;
-        try {
-            Date date = simpleDateFormat.parse(time);
-            times = date.getTime();
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, times, pendingIntent);
-            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-                alarmManager.setExact(AlarmManager.RTC_WAKEUP, times, pendingIntent);
-            } else {
-                alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, times,repeatTime, pendingIntent);
-            }
-        } catch (ParseException e) {
-            e.printStackTrace();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+        } else {
+            alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, triggerAtMillis,repeatTime, pendingIntent);
         }
     }
 
 
+    /**
+     * 设置一个重复闹钟，覆盖Android全版本
+     * 4.4及以上系统没有精确的重复闹钟，通过{@link AlarmMultiplexer}在每次触发后设置下一次，
+     * 触发时回调AlarmMultiplexer.OnAlarmListener
+     *
+     * @param id         闹钟id
+     * @param recurrence 重复规则
+     */
+    public static void setRecurringAlarmClock(int id, AlarmRecurrence recurrence, Context context) {
+        AlarmMultiplexer.scheduleRecurring(context, id, recurrence);
+    }
+
+
 }
@@ -0,0 +1,193 @@
+package cn.surine.lazyandroid;
+
+import java.util.Arrays;
+
+/**
+ * Intro：按触发时间排序的闹钟小顶堆
+ * 时间和id存放在基本类型数组中，另外用IntIntMap记录id在堆中的位置，按id修改或取消为O(log n)
+ * 非线程安全，由调用方加锁
+ *
+ * @author sunliwei
+ * @date 2020/5/6 10:20
+ */
+final class AlarmHeap {
+
+    private long[] times = new long[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    /**
+     * id在堆数组中的下标
+     */
+    private final IntIntMap positions = new IntIntMap();
+
+
+    /**
+     * 添加闹钟，id已存在时修改触发时间
+     */
+    void put(int id, long time) {
+        int index = positions.get(id, -1);
+        if (index >= 0) {
+            long old = times[index];
+            times[index] = time;
+            if (time < old) {
+                siftUp(index);
+            } else {
+                siftDown(index);
+            }
+            return;
+        }
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        times[size] = time;
+        ids[size] = id;
+        positions.put(id, size);
+        siftUp(size++);
+    }
+
+
+    /**
+     * 移除闹钟
+     *
+     * @return 是否存在
+     */
+    boolean remove(int id) {
+        int index = positions.get(id, -1);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+
+    boolean contains(int id) {
+        return positions.containsKey(id);
+    }
+
+
+    /**
+     * 获取闹钟的触发时间
+     *
+     * @return 不存在时返回-1
+     */
+    long timeOf(int id) {
+        int index = positions.get(id, -1);
+        return index < 0 ? -1 : times[index];
+    }
+
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * 最早的触发时间，调用前需确认不为空
+     */
+    long peekTime() {
+        return times[0];
+    }
+
+
+    int peekId() {
+        return ids[0];
+    }
+
+
+    /**
+     * 移除最早的闹钟
+     *
+     * @return 其id
+     */
+    int poll() {
+        int id = ids[0];
+        removeAt(0);
+        return id;
+    }
+
+
+    /**
+     * 按堆数组下标访问，用于遍历所有闹钟
+     */
+    int idAt(int index) {
+        return ids[index];
+    }
+
+
+    long timeAt(int index) {
+        return times[index];
+    }
+
+
+    void clear() {
+        size = 0;
+        positions.clear();
+    }
+
+
+    private void removeAt(int index) {
+        positions.remove(ids[index]);
+        size--;
+        if (index == size) {
+            return;
+        }
+        times[index] = times[size];
+        ids[index] = ids[size];
+        positions.put(ids[index], index);
+        //末尾元素可能比原位置的子节点大，也可能比父节点小
+        siftDown(index);
+        siftUp(index);
+    }
+
+
+    private void siftUp(int index) {
+        long time = times[index];
+        int id = ids[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (times[parent] <= time) {
+                break;
+            }
+            times[index] = times[parent];
+            ids[index] = ids[parent];
+            positions.put(ids[index], index);
+            index = parent;
+        }
+        times[index] = time;
+        ids[index] = id;
+        positions.put(id, index);
+    }
+
+
+    private void siftDown(int index) {
+        long time = times[index];
+        int id = ids[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && times[right] < times[child]) {
+                child = right;
+            }
+            if (time <= times[child]) {
+                break;
+            }
+            times[index] = times[child];
+            ids[index] = ids[child];
+            positions.put(ids[index], index);
+            index = child;
+        }
+        times[index] = time;
+        ids[index] = id;
+        positions.put(id, index);
+    }
+
+}
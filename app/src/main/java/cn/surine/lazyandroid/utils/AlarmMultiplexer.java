@@ -0,0 +1,466 @@
+package cn.surine.lazyandroid;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Intro：闹钟复用
+ * 所有逻辑闹钟按触发时间保存在本地的小顶堆中，只向AlarmManager注册最早的一个，
+ * 触发时分发所有已到期的闹钟并重新注册下一个，只有最早的时间变化时才调用AlarmManager，
+ * 每次修改的系统调用从O(n)降为O(1)，也不会受PendingIntent数量的限制
+ * <p>
+ * 需要在AndroidManifest中注册AlarmMultiplexer$Receiver，并在Application中设置监听：
+ * AlarmMultiplexer.setOnAlarmListener(listener);
+ * AlarmMultiplexer.schedule(context, id, triggerAtMillis);
+ * <p>
+ * 闹钟默认写入{@link AlarmStore}，第一次设置、取消或系统闹钟触发时从日志恢复，进程被杀或设备重启后不会丢失，
+ * 设备重启需要额外注册AlarmMultiplexer$BootReceiver和RECEIVE_BOOT_COMPLETED权限
+ * <p>
+ * scheduleRecurring设置的重复闹钟在每次触发后按{@link AlarmRecurrence}计算下一次时间并自动重新设置，
+ * 重复规则和下一次触发时间一起持久化，恢复后继续重复
+ *
+ * @author sunliwei
+ * @date 2020/5/6 10:50
+ */
+public final class AlarmMultiplexer {
+
+    private static final String TAG = "AlarmMultiplexer";
+
+    static final String ACTION_ALARM = "cn.surine.lazyandroid.action.MULTIPLEXED_ALARM";
+
+    /**
+     * 未注册系统闹钟
+     */
+    private static final long NOT_ARMED = Long.MIN_VALUE;
+
+    private static final AlarmHeap HEAP = new AlarmHeap();
+
+    /**
+     * 当前向AlarmManager注册的时间
+     */
+    private static long armedTime = NOT_ARMED;
+
+    private static OnAlarmListener listener;
+
+    /**
+     * 调用AlarmManager的次数
+     */
+    private static int systemCallCount;
+
+    /**
+     * 持久化存储，恢复前或写入失败后为null
+     */
+    private static AlarmStore store;
+
+    /**
+     * 是否已从日志恢复，失败时也不再重试
+     */
+    private static boolean restored;
+
+    /**
+     * 重复闹钟的规则
+     */
+    private static final HashMap<Integer, AlarmRecurrence> RECURRENCES = new HashMap<>();
+
+    /**
+     * 逻辑闹钟触发的回调，在主线程调用
+     */
+    public interface OnAlarmListener {
+
+        /**
+         * @param id              闹钟id
+         * @param triggerAtMillis 设置的触发时间
+         */
+        void onAlarm(int id, long triggerAtMillis);
+    }
+
+    private AlarmMultiplexer() {
+    }
+
+
+    public static synchronized void setOnAlarmListener(OnAlarmListener onAlarmListener) {
+        listener = onAlarmListener;
+    }
+
+
+    /**
+     * 设置一个逻辑闹钟，id已存在时修改触发时间
+     *
+     * @param id              闹钟id
+     * @param triggerAtMillis 触发时间（RTC，毫秒）
+     */
+    public static synchronized void schedule(Context context, int id, long triggerAtMillis) {
+        restore(context);
+        //先删除规则，中途崩溃时最多丢掉重复，不会让一次性闹钟变成重复的
+        if (RECURRENCES.remove(id) != null) {
+            saveRules();
+        }
+        put(context, id, triggerAtMillis);
+    }
+
+
+    /**
+     * 设置一个重复闹钟，每次触发后自动设置下一次，id已存在时替换
+     * 错过的触发（如关机期间）不会补发，只从当前时间往后计算下一次
+     *
+     * @param id         闹钟id
+     * @param recurrence 重复规则
+     */
+    public static synchronized void scheduleRecurring(Context context, int id, AlarmRecurrence recurrence) {
+        restore(context);
+        long next = recurrence.nextAfter(System.currentTimeMillis());
+        if (next == AlarmRecurrence.NONE) {
+            cancel(context, id);
+            return;
+        }
+        RECURRENCES.put(id, recurrence);
+        put(context, id, next);
+        saveRules();
+    }
+
+
+    private static void put(Context context, int id, long triggerAtMillis) {
+        HEAP.put(id, triggerAtMillis);
+        if (store != null) {
+            try {
+                store.put(id, triggerAtMillis);
+                //反复修改同一个闹钟会留下被覆盖的PUT，和墓碑一样需要压缩
+                compactIfNeeded();
+            } catch (IOException e) {
+                onStoreError(e);
+            }
+        }
+        rearm(context);
+    }
+
+
+    /**
+     * 从日志恢复闹钟并注册最早的一个
+     * 设置、取消和系统闹钟触发前都会自动恢复，也可以在Application.onCreate中调用提前恢复，重复调用无效果
+     * isScheduled等查询方法没有Context，恢复前只能查到本进程设置的闹钟
+     */
+    public static synchronized void restore(Context context) {
+        if (restored) {
+            return;
+        }
+        restored = true;
+        AlarmStore alarmStore = new AlarmStore(new File(context.getFilesDir(), AlarmStore.FILE_NAME));
+        try {
+            AlarmStore.Entries entries = alarmStore.load();
+            //恢复在任何修改之前完成，日志就是完整的状态，不需要和内存合并
+            for (int i = 0; i < entries.size; i++) {
+                HEAP.put(entries.ids[i], entries.times[i]);
+            }
+            try {
+                //规则和触发时间分开写入，只保留仍在堆中的
+                for (Map.Entry<Integer, AlarmRecurrence> entry : alarmStore.loadRules().entrySet()) {
+                    if (HEAP.contains(entry.getKey())) {
+                        RECURRENCES.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "failed to restore recurrences", e);
+            }
+            store = alarmStore;
+        } catch (IOException e) {
+            Log.e(TAG, "failed to restore alarms, persistence disabled", e);
+            try {
+                alarmStore.close();
+            } catch (IOException ignored) {
+            }
+            store = null;
+        }
+        if (store != null) {
+            //压缩失败只关闭持久化，已恢复的闹钟仍然要注册
+            try {
+                compactIfNeeded();
+            } catch (IOException e) {
+                onStoreError(e);
+            }
+        }
+        rearm(context);
+    }
+
+
+    /**
+     * 批量设置逻辑闹钟，全部加入后只注册一次系统闹钟
+     *
+     * @param ids              闹钟id
+     * @param triggerAtMillis 对应的触发时间
+     */
+    public static synchronized void scheduleAll(Context context, int[] ids, long[] triggerAtMillis) {
+        if (ids.length != triggerAtMillis.length) {
+            throw new IllegalArgumentException("ids and triggerAtMillis must be of the same length");
+        }
+        restore(context);
+        boolean rulesChanged = false;
+        for (int i = 0; i < ids.length; i++) {
+            rulesChanged |= RECURRENCES.remove(ids[i]) != null;
+            HEAP.put(ids[i], triggerAtMillis[i]);
+        }
+        if (rulesChanged) {
+            saveRules();
+        }
+        if (store != null) {
+            try {
+                store.putAll(ids, triggerAtMillis, ids.length);
+                compactIfNeeded();
+            } catch (IOException e) {
+                onStoreError(e);
+            }
+        }
+        rearm(context);
+    }
+
+
+    /**
+     * 取消逻辑闹钟
+     */
+    public static synchronized void cancel(Context context, int id) {
+        restore(context);
+        if (RECURRENCES.remove(id) != null) {
+            saveRules();
+        }
+        if (HEAP.remove(id)) {
+            if (store != null) {
+                try {
+                    store.delete(id);
+                    compactIfNeeded();
+                } catch (IOException e) {
+                    onStoreError(e);
+                }
+            }
+            rearm(context);
+        }
+    }
+
+
+    public static synchronized boolean isRecurring(int id) {
+        return RECURRENCES.containsKey(id);
+    }
+
+
+    public static synchronized boolean isScheduled(int id) {
+        return HEAP.contains(id);
+    }
+
+
+    /**
+     * 获取闹钟的触发时间
+     *
+     * @return 不存在时返回-1
+     */
+    public static synchronized long getTriggerTime(int id) {
+        return HEAP.timeOf(id);
+    }
+
+
+    public static synchronized int size() {
+        return HEAP.size();
+    }
+
+
+    public static synchronized int getSystemCallCount() {
+        return systemCallCount;
+    }
+
+
+    /**
+     * 系统闹钟触发，分发所有已到期的逻辑闹钟并注册下一个
+     */
+    static void onSystemAlarm(Context context) {
+        int[] dueIds;
+        long[] dueTimes;
+        OnAlarmListener current;
+        synchronized (AlarmMultiplexer.class) {
+            //进程可能是被系统闹钟拉起的，先恢复
+            restore(context);
+            //系统闹钟已触发，需要重新注册
+            armedTime = NOT_ARMED;
+            long now = System.currentTimeMillis();
+            int count = 0;
+            dueIds = new int[4];
+            dueTimes = new long[4];
+            while (!HEAP.isEmpty() && HEAP.peekTime() <= now) {
+                if (count == dueIds.length) {
+                    dueIds = Arrays.copyOf(dueIds, count * 2);
+                    dueTimes = Arrays.copyOf(dueTimes, count * 2);
+                }
+                dueTimes[count] = HEAP.peekTime();
+                dueIds[count++] = HEAP.poll();
+            }
+            dueIds = Arrays.copyOf(dueIds, count);
+            dueTimes = Arrays.copyOf(dueTimes, count);
+            //重复闹钟直接放回堆中，和一次性闹钟一起只注册一次系统闹钟
+            int[] nextIds = null;
+            long[] nextTimes = null;
+            int nextCount = 0;
+            boolean rulesChanged = false;
+            if (!RECURRENCES.isEmpty()) {
+                for (int i = 0; i < count; i++) {
+                    AlarmRecurrence recurrence = RECURRENCES.get(dueIds[i]);
+                    if (recurrence == null) {
+                        continue;
+                    }
+                    long next = recurrence.nextAfter(Math.max(now, dueTimes[i]));
+                    if (next == AlarmRecurrence.NONE) {
+                        RECURRENCES.remove(dueIds[i]);
+                        rulesChanged = true;
+                        continue;
+                    }
+                    if (nextIds == null) {
+                        nextIds = new int[count];
+                        nextTimes = new long[count];
+                    }
+                    HEAP.put(dueIds[i], next);
+                    nextIds[nextCount] = dueIds[i];
+                    nextTimes[nextCount++] = next;
+                }
+            }
+            if (store != null && count > 0) {
+                try {
+                    store.deleteAll(dueIds, count);
+                    if (nextCount > 0) {
+                        store.putAll(nextIds, nextTimes, nextCount);
+                    }
+                    compactIfNeeded();
+                } catch (IOException e) {
+                    onStoreError(e);
+                }
+            }
+            if (rulesChanged) {
+                saveRules();
+            }
+            rearm(context);
+            current = listener;
+        }
+        if (current == null) {
+            Log.w(TAG, dueIds.length + " alarms fired without OnAlarmListener");
+            return;
+        }
+        //在锁外回调，回调中可以继续设置闹钟
+        for (int i = 0; i < dueIds.length; i++) {
+            current.onAlarm(dueIds[i], dueTimes[i]);
+        }
+    }
+
+
+    /**
+     * 设备重启后系统闹钟全部丢失，恢复并重新注册
+     */
+    static synchronized void onBootCompleted(Context context) {
+        restore(context);
+        armedTime = NOT_ARMED;
+        rearm(context);
+    }
+
+
+    /**
+     * 墓碑和被覆盖的记录过多时按堆中的闹钟重写日志
+     */
+    private static void compactIfNeeded() throws IOException {
+        if (!store.shouldCompact(HEAP.size())) {
+            return;
+        }
+        int size = HEAP.size();
+        int[] ids = new int[size];
+        long[] times = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = HEAP.idAt(i);
+            times[i] = HEAP.timeAt(i);
+        }
+        store.compact(ids, times, size);
+    }
+
+
+    /**
+     * 重写重复闹钟的规则
+     */
+    private static void saveRules() {
+        if (store != null) {
+            try {
+                store.saveRules(RECURRENCES);
+            } catch (IOException e) {
+                onStoreError(e);
+            }
+        }
+    }
+
+
+    /**
+     * 写入失败后关闭持久化，内存中的闹钟不受影响
+     */
+    private static void onStoreError(IOException e) {
+        Log.e(TAG, "failed to persist alarms, persistence disabled", e);
+        try {
+            store.close();
+        } catch (IOException ignored) {
+        }
+        store = null;
+    }
+
+
+    /**
+     * 最早的时间变化时才重新注册系统闹钟，同一个PendingIntent会替换之前的注册
+     */
+    private static void rearm(Context context) {
+        long next = HEAP.isEmpty() ? NOT_ARMED : HEAP.peekTime();
+        if (next == armedTime) {
+            return;
+        }
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0,
+                new Intent(context, Receiver.class).setAction(ACTION_ALARM), PendingIntent.FLAG_UPDATE_CURRENT);
+        systemCallCount++;
+        armedTime = next;
+        if (next == NOT_ARMED) {
+            alarmManager.cancel(pendingIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, next, pendingIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, next, pendingIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, next, pendingIntent);
+        }
+    }
+
+
+    /**
+     * 接收系统闹钟
+     */
+    public static class Receiver extends BroadcastReceiver {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (ACTION_ALARM.equals(intent.getAction())) {
+                onSystemAlarm(context.getApplicationContext());
+            }
+        }
+    }
+
+
+    /**
+     * 设备重启后恢复闹钟
+     */
+    public static class BootReceiver extends BroadcastReceiver {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+                onBootCompleted(context.getApplicationContext());
+            }
+        }
+    }
+
+}
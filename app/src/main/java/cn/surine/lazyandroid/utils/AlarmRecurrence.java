@@ -0,0 +1,439 @@
+package cn.surine.lazyandroid;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intro：闹钟重复规则
+ * 支持固定间隔、cron表达式（分 时 日 月 周）和按星期重复，
+ * 日历规则的每个字段保存为位集合，计算下一次触发时间时按字段逐级查找下一个置位的位，不需要逐分钟尝试，
+ * 计算过程不分配对象，一次计算为微秒级
+ * 日历规则按本地时间匹配：夏令时结束时重复的本地时间只触发第一次，夏令时开始时跳过的时间按标准时间换算
+ * 创建后不可修改，可以在多个线程中使用
+ *
+ * @author sunliwei
+ * @date 2020/5/10 14:00
+ */
+public final class AlarmRecurrence {
+
+    /**
+     * 没有下一次触发时间
+     */
+    public static final long NONE = -1;
+
+    public static final int SUNDAY = 1;
+    public static final int MONDAY = 1 << 1;
+    public static final int TUESDAY = 1 << 2;
+    public static final int WEDNESDAY = 1 << 3;
+    public static final int THURSDAY = 1 << 4;
+    public static final int FRIDAY = 1 << 5;
+    public static final int SATURDAY = 1 << 6;
+    public static final int WORKDAYS = MONDAY | TUESDAY | WEDNESDAY | THURSDAY | FRIDAY;
+    public static final int WEEKEND = SATURDAY | SUNDAY;
+    public static final int EVERY_DAY = WORKDAYS | WEEKEND;
+
+    /**
+     * 持久化时的规则类型
+     */
+    private static final byte KIND_INTERVAL = 0;
+    private static final byte KIND_CALENDAR = 1;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * 日和月从1开始，第0位不用
+     */
+    private static final long ALL_DAYS = ((1L << 32) - 1) & ~1L;
+    private static final long ALL_MONTHS = ((1L << 13) - 1) & ~1L;
+
+    /**
+     * 只按日或只按月设置时，最长要到8年后才能遇到2月29日
+     */
+    private static final int MAX_SEARCH_YEARS = 9;
+
+    private final long firstAtMillis;
+    private final long intervalMillis;
+
+    private final long minutes;
+    private final long hours;
+    private final long days;
+    private final long months;
+    private final int weekdays;
+    /**
+     * cron规则：日和周都被限定时满足其一即可，否则需要同时满足
+     */
+    private final boolean matchEither;
+    private final TimeZone zone;
+
+    /**
+     * 以第i天为星期i的月份中，满足星期条件的日期集合
+     */
+    private final long[] weekdayDays;
+
+    private AlarmRecurrence(long firstAtMillis, long intervalMillis) {
+        this.firstAtMillis = firstAtMillis;
+        this.intervalMillis = intervalMillis;
+        this.minutes = 0;
+        this.hours = 0;
+        this.days = 0;
+        this.months = 0;
+        this.weekdays = 0;
+        this.matchEither = false;
+        this.zone = null;
+        this.weekdayDays = null;
+    }
+
+    private AlarmRecurrence(long minutes, long hours, long days, long months, int weekdays, boolean matchEither, TimeZone zone) {
+        this.firstAtMillis = 0;
+        this.intervalMillis = 0;
+        this.minutes = minutes;
+        this.hours = hours;
+        this.days = days;
+        this.months = months;
+        this.weekdays = weekdays;
+        this.matchEither = matchEither;
+        //TimeZone是可变的，复制一份避免被外部修改
+        this.zone = (TimeZone) zone.clone();
+        this.weekdayDays = new long[7];
+        for (int first = 0; first < 7; first++) {
+            long mask = 0;
+            for (int day = 1; day <= 31; day++) {
+                if ((weekdays & (1 << ((first + day - 1) % 7))) != 0) {
+                    mask |= 1L << day;
+                }
+            }
+            weekdayDays[first] = mask;
+        }
+    }
+
+
+    /**
+     * 固定间隔重复
+     *
+     * @param firstAtMillis  第一次触发时间
+     * @param intervalMillis 间隔（毫秒）
+     */
+    public static AlarmRecurrence interval(long firstAtMillis, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        return new AlarmRecurrence(firstAtMillis, intervalMillis);
+    }
+
+
+    public static AlarmRecurrence interval(long firstAtMillis, long interval, TimeUnit unit) {
+        return interval(firstAtMillis, unit.toMillis(interval));
+    }
+
+
+    /**
+     * 每周指定的几天在同一时间触发
+     *
+     * @param weekdayMask SUNDAY ~ SATURDAY 的组合
+     * @param hour        0 ~ 23
+     * @param minute      0 ~ 59
+     */
+    public static AlarmRecurrence weekly(int weekdayMask, int hour, int minute, TimeZone zone) {
+        if ((weekdayMask & EVERY_DAY) == 0 || (weekdayMask & ~EVERY_DAY) != 0) {
+            throw new IllegalArgumentException("invalid weekdayMask: " + weekdayMask);
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            throw new IllegalArgumentException("invalid time " + hour + ":" + minute);
+        }
+        return new AlarmRecurrence(1L << minute, 1L << hour, ALL_DAYS, ALL_MONTHS, weekdayMask, false, zone);
+    }
+
+
+    /**
+     * 每天同一时间触发
+     */
+    public static AlarmRecurrence daily(int hour, int minute, TimeZone zone) {
+        return weekly(EVERY_DAY, hour, minute, zone);
+    }
+
+
+    /**
+     * 解析cron表达式，格式为 分 时 日 月 周，以空格分隔
+     * 每个字段支持 *、数字、a-b、以及在 * 或 a-b 后加 /n 表示步长，多个值用逗号分隔；
+     * 周的取值为0~7，0和7都表示周日；日和周都不为 * 时满足其一即触发，与cron一致
+     *
+     * @throws IllegalArgumentException 表达式格式错误
+     */
+    public static AlarmRecurrence cron(String expression, TimeZone zone) {
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("cron expression must have 5 fields: " + expression);
+        }
+        long minutes = parseField(fields[0], 0, 59, expression);
+        long hours = parseField(fields[1], 0, 23, expression);
+        long days = parseField(fields[2], 1, 31, expression);
+        long months = parseField(fields[3], 1, 12, expression);
+        long weekdayBits = parseField(fields[4], 0, 7, expression);
+        int weekdays = (int) ((weekdayBits | (weekdayBits >>> 7)) & EVERY_DAY);
+        boolean daysRestricted = !isWildcard(fields[2]);
+        boolean weekdaysRestricted = !isWildcard(fields[4]);
+        if (!daysRestricted) {
+            days = ALL_DAYS;
+        }
+        if (!weekdaysRestricted) {
+            weekdays = EVERY_DAY;
+        }
+        return new AlarmRecurrence(minutes, hours, days, months, weekdays, daysRestricted && weekdaysRestricted, zone);
+    }
+
+
+    public boolean isInterval() {
+        return intervalMillis > 0;
+    }
+
+
+    /**
+     * 写入规则，供{@link AlarmStore}持久化，时区只保存id
+     */
+    void writeTo(DataOutput out) throws IOException {
+        if (intervalMillis > 0) {
+            out.writeByte(KIND_INTERVAL);
+            out.writeLong(firstAtMillis);
+            out.writeLong(intervalMillis);
+            return;
+        }
+        out.writeByte(KIND_CALENDAR);
+        out.writeLong(minutes);
+        out.writeLong(hours);
+        out.writeLong(days);
+        out.writeLong(months);
+        out.writeInt(weekdays);
+        out.writeBoolean(matchEither);
+        out.writeUTF(zone.getID());
+    }
+
+
+    /**
+     * 读取{@link #writeTo}写入的规则
+     */
+    static AlarmRecurrence readFrom(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        if (kind == KIND_INTERVAL) {
+            long firstAtMillis = in.readLong();
+            long intervalMillis = in.readLong();
+            if (intervalMillis <= 0) {
+                throw new IOException("invalid recurrence interval " + intervalMillis);
+            }
+            return new AlarmRecurrence(firstAtMillis, intervalMillis);
+        }
+        if (kind != KIND_CALENDAR) {
+            throw new IOException("unknown recurrence kind " + kind);
+        }
+        long minutes = in.readLong();
+        long hours = in.readLong();
+        long days = in.readLong();
+        long months = in.readLong();
+        int weekdays = in.readInt();
+        boolean matchEither = in.readBoolean();
+        TimeZone zone = TimeZone.getTimeZone(in.readUTF());
+        return new AlarmRecurrence(minutes, hours, days, months, weekdays, matchEither, zone);
+    }
+
+
+    /**
+     * 计算下一次触发时间
+     *
+     * @param afterMillis 从这个时间之后（不含）开始查找
+     * @return 触发时间（毫秒），没有时返回{@link #NONE}
+     */
+    public long nextAfter(long afterMillis) {
+        if (intervalMillis > 0) {
+            if (afterMillis < firstAtMillis) {
+                return firstAtMillis;
+            }
+            return firstAtMillis + ((afterMillis - firstAtMillis) / intervalMillis + 1) * intervalMillis;
+        }
+
+        //从下一分钟开始，转换为本地时间的各个字段
+        long local = afterMillis + zone.getOffset(afterMillis);
+        long minuteIndex = floorDiv(local, MILLIS_PER_MINUTE) + 1;
+        long epochDay = floorDiv(minuteIndex, MINUTES_PER_DAY);
+        int minuteOfDay = (int) (minuteIndex - epochDay * MINUTES_PER_DAY);
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        //civil from days
+        long shifted = epochDay + 719468;
+        long era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+        int dayOfEra = (int) (shifted - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        int lastYear = year + MAX_SEARCH_YEARS;
+        while (year <= lastYear) {
+            int nextMonth = nextBit(months, month);
+            if (nextMonth < 0) {
+                year++;
+                month = 1;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            if (nextMonth != month) {
+                month = nextMonth;
+                day = 1;
+                hour = 0;
+                minute = 0;
+            }
+            int nextDay = nextBit(dayMask(year, month), day);
+            if (nextDay < 0) {
+                month++;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            if (nextDay != day) {
+                day = nextDay;
+                hour = 0;
+                minute = 0;
+            }
+            int nextHour = nextBit(hours, hour);
+            if (nextHour < 0) {
+                day++;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            if (nextHour != hour) {
+                hour = nextHour;
+                minute = 0;
+            }
+            int nextMinute = nextBit(minutes, minute);
+            if (nextMinute < 0) {
+                hour++;
+                minute = 0;
+                continue;
+            }
+            long result = resolve(year, month, day, hour, nextMinute, afterMillis);
+            if (result != NONE) {
+                return result;
+            }
+            minute = nextMinute + 1;
+        }
+        return NONE;
+    }
+
+
+    /**
+     * 本地时间换算为时刻
+     *
+     * @return 不晚于afterMillis时返回{@link #NONE}
+     */
+    private long resolve(int year, int month, int day, int hour, int minute, long afterMillis) {
+        long local = AlarmTimeParser.daysFromCivil(year, month, day) * MINUTES_PER_DAY * MILLIS_PER_MINUTE
+                + (hour * 60L + minute) * MILLIS_PER_MINUTE;
+        int dstOffset = zone.getRawOffset() + zone.getDSTSavings();
+        long daylight = local - dstOffset;
+        //重复的本地时间优先取夏令时，即第一次出现的时刻
+        long result = zone.getDSTSavings() != 0 && zone.getOffset(daylight) == dstOffset
+                ? daylight : AlarmTimeParser.toEpochMillis(year, month, day, hour, minute, zone);
+        return result > afterMillis ? result : NONE;
+    }
+
+
+    /**
+     * 某月中满足日和星期条件的日期集合
+     */
+    private long dayMask(int year, int month) {
+        long inMonth = (1L << (AlarmTimeParser.daysInMonth(year, month) + 1)) - 2;
+        int firstWeekday = (int) floorMod(AlarmTimeParser.daysFromCivil(year, month, 1) + 4, 7);
+        long byWeekday = weekdayDays[firstWeekday];
+        long mask = matchEither ? (days | byWeekday) : (days & byWeekday);
+        return mask & inMonth;
+    }
+
+
+    /**
+     * 从from位开始（含）的下一个置位的位
+     *
+     * @return 没有时返回-1
+     */
+    private static int nextBit(long bits, int from) {
+        if (from > 63) {
+            return -1;
+        }
+        long masked = bits & (-1L << from);
+        return masked == 0 ? -1 : Long.numberOfTrailingZeros(masked);
+    }
+
+
+    private static boolean isWildcard(String field) {
+        return "*".equals(field) || "?".equals(field);
+    }
+
+
+    private static long parseField(String field, int min, int max, String expression) {
+        long bits = 0;
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max - min + 1, expression);
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if ("*".equals(part) || "?".equals(part)) {
+                from = min;
+                to = max;
+            } else {
+                int dash = part.indexOf('-');
+                if (dash >= 0) {
+                    from = parseNumber(part.substring(0, dash), min, max, expression);
+                    to = parseNumber(part.substring(dash + 1), min, max, expression);
+                    if (from > to) {
+                        throw new IllegalArgumentException("invalid range " + part + " in " + expression);
+                    }
+                } else {
+                    from = parseNumber(part, min, max, expression);
+                    //"5/15" 表示从5开始每15
+                    to = slash >= 0 ? max : from;
+                }
+            }
+            for (int value = from; value <= to; value += step) {
+                bits |= 1L << value;
+            }
+        }
+        return bits;
+    }
+
+
+    private static int parseNumber(String text, int min, int max, String expression) {
+        int value;
+        try {
+            value = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number \"" + text + "\" in " + expression, e);
+        }
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(value + " out of range [" + min + ", " + max + "] in " + expression);
+        }
+        return value;
+    }
+
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
+    }
+
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+}
@@ -0,0 +1,350 @@
+package cn.surine.lazyandroid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Intro：闹钟的持久化存储
+ * 以追加日志的形式保存，每条记录固定16字节：id(4) + 触发时间(8) + 操作(1) + 保留(1) + 校验(2)
+ * 设置写入PUT记录，取消和触发写入DELETE记录（墓碑），恢复时通过内存映射顺序读取，后面的记录覆盖前面的
+ * 写入过程中崩溃只会留下不完整或校验不通过的末尾记录，打开时截断；墓碑过多时写入临时文件后整体替换
+ * 重复闹钟的规则很少变化，单独保存在规则文件中，每次修改整体重写
+ * 非线程安全，由调用方加锁
+ *
+ * @author sunliwei
+ * @date 2020/5/8 15:30
+ */
+final class AlarmStore {
+
+    static final String FILE_NAME = "lazy_alarms.log";
+    static final String RULES_FILE_NAME = "lazy_alarm_rules";
+
+    private static final int MAGIC = 0x4C5A414C;
+    private static final int RULES_MAGIC = 0x4C5A4152;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 16;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    /**
+     * 记录数达到该值且超过存活数的两倍时压缩
+     */
+    private static final int COMPACT_MIN_RECORDS = 1024;
+
+    private final File file;
+    private final File rulesFile;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    /**
+     * 日志中的记录数，包括墓碑
+     */
+    private int recordCount;
+
+    /**
+     * 恢复出的闹钟
+     */
+    static final class Entries {
+        final int[] ids;
+        final long[] times;
+        final int size;
+
+        Entries(int[] ids, long[] times, int size) {
+            this.ids = ids;
+            this.times = times;
+            this.size = size;
+        }
+    }
+
+    AlarmStore(File file) {
+        this.file = file;
+        this.rulesFile = new File(file.getParentFile(), RULES_FILE_NAME);
+    }
+
+
+    /**
+     * 打开日志并恢复所有未取消的闹钟
+     * 末尾不完整或校验不通过的记录视为写入时崩溃，截断后继续使用
+     */
+    Entries load() throws IOException {
+        close();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        long length = channel.size();
+        if (length < HEADER_SIZE || !checkHeader()) {
+            //新文件或无法识别的文件，重新开始
+            channel.truncate(0);
+            writeHeader(channel);
+            recordCount = 0;
+            return new Entries(new int[0], new long[0], 0);
+        }
+
+        int records = (int) ((length - HEADER_SIZE) / RECORD_SIZE);
+        int[] ids = new int[Math.max(16, records)];
+        long[] times = new long[ids.length];
+        IntIntMap slots = new IntIntMap(records);
+        int size = 0;
+        int valid = 0;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) records * RECORD_SIZE);
+        for (; valid < records; valid++) {
+            int id = buffer.getInt();
+            long time = buffer.getLong();
+            byte op = buffer.get();
+            buffer.get();
+            short checksum = buffer.getShort();
+            if ((op != OP_PUT && op != OP_DELETE) || checksum != checksum(id, time, op)) {
+                break;
+            }
+            int slot = slots.get(id, -1);
+            if (op == OP_PUT) {
+                if (slot < 0) {
+                    slots.put(id, size);
+                    ids[size] = id;
+                    times[size++] = time;
+                } else {
+                    times[slot] = time;
+                }
+            } else if (slot >= 0) {
+                //用最后一个填补删除的位置
+                slots.remove(id);
+                size--;
+                if (slot != size) {
+                    ids[slot] = ids[size];
+                    times[slot] = times[size];
+                    slots.put(ids[slot], slot);
+                }
+            }
+        }
+        recordCount = valid;
+        long validLength = HEADER_SIZE + (long) valid * RECORD_SIZE;
+        if (validLength != length) {
+            channel.truncate(validLength);
+        }
+        return new Entries(ids, times, size);
+    }
+
+
+    /**
+     * 记录设置的闹钟
+     */
+    void put(int id, long time) throws IOException {
+        recordBuffer.clear();
+        putRecord(recordBuffer, id, time, OP_PUT);
+        recordBuffer.flip();
+        append(recordBuffer, 1);
+    }
+
+
+    /**
+     * 批量记录设置的闹钟，只写入一次
+     */
+    void putAll(int[] ids, long[] times, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            putRecord(buffer, ids[i], times[i], OP_PUT);
+        }
+        buffer.flip();
+        append(buffer, count);
+    }
+
+
+    /**
+     * 记录取消或已触发的闹钟
+     */
+    void delete(int id) throws IOException {
+        recordBuffer.clear();
+        putRecord(recordBuffer, id, 0, OP_DELETE);
+        recordBuffer.flip();
+        append(recordBuffer, 1);
+    }
+
+
+    /**
+     * 批量记录取消或已触发的闹钟，只写入一次
+     */
+    void deleteAll(int[] ids, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            putRecord(buffer, ids[i], 0, OP_DELETE);
+        }
+        buffer.flip();
+        append(buffer, count);
+    }
+
+
+    /**
+     * 墓碑是否过多
+     *
+     * @param liveCount 当前存活的闹钟数
+     */
+    boolean shouldCompact(int liveCount) {
+        return recordCount >= COMPACT_MIN_RECORDS && recordCount > liveCount * 2;
+    }
+
+
+    /**
+     * 按当前存活的闹钟重写日志
+     * 先写入临时文件并同步到磁盘，再重命名替换，任意时刻崩溃都保留完整的旧日志或新日志
+     */
+    void compact(int[] ids, long[] times, int count) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile tempFile = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel tempChannel = tempFile.getChannel();
+            tempChannel.truncate(0);
+            writeHeader(tempChannel);
+            ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_SIZE);
+            for (int i = 0; i < count; i++) {
+                putRecord(buffer, ids[i], times[i], OP_PUT);
+            }
+            buffer.flip();
+            long position = HEADER_SIZE;
+            while (buffer.hasRemaining()) {
+                position += tempChannel.write(buffer, position);
+            }
+            tempChannel.force(true);
+        } finally {
+            tempFile.close();
+        }
+        close();
+        if (!temp.renameTo(file)) {
+            throw new IOException("failed to replace " + file);
+        }
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        recordCount = count;
+    }
+
+
+    /**
+     * 读取重复闹钟的规则
+     *
+     * @return 闹钟id到规则，文件不存在时为空
+     */
+    HashMap<Integer, AlarmRecurrence> loadRules() throws IOException {
+        HashMap<Integer, AlarmRecurrence> rules = new HashMap<>();
+        if (!rulesFile.exists()) {
+            return rules;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(rulesFile)));
+        try {
+            if (in.readInt() != RULES_MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unrecognized rules file " + rulesFile);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                rules.put(id, AlarmRecurrence.readFrom(in));
+            }
+        } catch (EOFException e) {
+            throw new IOException("truncated rules file " + rulesFile, e);
+        } finally {
+            in.close();
+        }
+        return rules;
+    }
+
+
+    /**
+     * 重写重复闹钟的规则，与压缩一样先写临时文件再替换
+     */
+    void saveRules(Map<Integer, AlarmRecurrence> rules) throws IOException {
+        File temp = new File(rulesFile.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(RULES_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rules.size());
+            for (Map.Entry<Integer, AlarmRecurrence> entry : rules.entrySet()) {
+                out.writeInt(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!temp.renameTo(rulesFile)) {
+            throw new IOException("failed to replace " + rulesFile);
+        }
+    }
+
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+
+    void close() throws IOException {
+        if (randomAccessFile != null) {
+            randomAccessFile.close();
+            randomAccessFile = null;
+            channel = null;
+        }
+    }
+
+
+    private void append(ByteBuffer buffer, int count) throws IOException {
+        if (channel == null) {
+            throw new IOException("alarm store is not loaded");
+        }
+        long position = HEADER_SIZE + (long) recordCount * RECORD_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        recordCount += count;
+    }
+
+
+    private boolean checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+
+    private static void writeHeader(FileChannel target) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        target.write(header, 0);
+    }
+
+
+    private static void putRecord(ByteBuffer buffer, int id, long time, byte op) {
+        buffer.putInt(id);
+        buffer.putLong(time);
+        buffer.put(op);
+        buffer.put((byte) 0);
+        buffer.putShort(checksum(id, time, op));
+    }
+
+
+    private static short checksum(int id, long time, byte op) {
+        int hash = MAGIC;
+        hash = 31 * hash + id;
+        hash = 31 * hash + (int) time;
+        hash = 31 * hash + (int) (time >>> 32);
+        hash = 31 * hash + op;
+        return (short) (hash ^ (hash >>> 16));
+    }
+
+}
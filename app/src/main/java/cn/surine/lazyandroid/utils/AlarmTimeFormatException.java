@@ -0,0 +1,85 @@
+package cn.surine.lazyandroid;
+
+/**
+ * Intro：闹钟时间格式错误
+ * 包含原始文本、出错的位置和原因，取代之前被printStackTrace吞掉的ParseException
+ *
+ * @author sunliwei
+ * @date 2020/5/9 10:20
+ */
+public class AlarmTimeFormatException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 4683211925317609810L;
+
+    /**
+     * 文本为空
+     */
+    public static final int REASON_EMPTY = 0;
+    /**
+     * 此处应为数字
+     */
+    public static final int REASON_EXPECTED_DIGIT = 1;
+    /**
+     * 此处应为分隔符 '-'、' ' 或 ':'
+     */
+    public static final int REASON_EXPECTED_SEPARATOR = 2;
+    /**
+     * 月、日、时、分超出范围
+     */
+    public static final int REASON_OUT_OF_RANGE = 3;
+    /**
+     * 分钟之后还有多余的字符
+     */
+    public static final int REASON_TRAILING_TEXT = 4;
+
+    private final String text;
+    private final int errorOffset;
+    private final int reason;
+
+    public AlarmTimeFormatException(CharSequence text, int errorOffset, int reason) {
+        super("Unparseable alarm time \"" + text + "\" at " + errorOffset + ": " + reasonName(reason));
+        this.text = text == null ? null : text.toString();
+        this.errorOffset = errorOffset;
+        this.reason = reason;
+    }
+
+
+    public String getText() {
+        return text;
+    }
+
+
+    /**
+     * @return 出错字符的下标
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+
+
+    /**
+     * @return REASON_*之一
+     */
+    public int getReason() {
+        return reason;
+    }
+
+
+    private static String reasonName(int reason) {
+        switch (reason) {
+            case REASON_EMPTY:
+                return "empty";
+            case REASON_EXPECTED_DIGIT:
+                return "expected digit";
+            case REASON_EXPECTED_SEPARATOR:
+                return "expected separator";
+            case REASON_OUT_OF_RANGE:
+                return "field out of range";
+            case REASON_TRAILING_TEXT:
+                return "trailing text";
+            default:
+                return "unknown";
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+package cn.surine.lazyandroid;
+
+import java.util.TimeZone;
+
+/**
+ * Intro：解析 yyyy-MM-dd HH:mm 格式的闹钟时间
+ * 手写解析，不创建SimpleDateFormat、Date和Calendar，解析成功时不分配对象，
+ * 没有共享的可变状态，可以在多个线程中同时调用
+ * 年份固定4位，月、日、时、分为1~2位，超出范围的值不会像SimpleDateFormat那样顺延，而是解析失败
+ *
+ * @author sunliwei
+ * @date 2020/5/9 10:20
+ */
+public final class AlarmTimeParser {
+
+    /**
+     * tryParse解析失败时的返回值
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    /**
+     * 内部用远小于任何合法时间戳的负数表示错误，编码为 ERROR_BASE - (reason * 256 + offset)，
+     * 解析失败的路径也不需要分配对象
+     */
+    private static final long ERROR_BASE = Long.MIN_VALUE / 2;
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private AlarmTimeParser() {
+    }
+
+
+    /**
+     * 按指定时区解析
+     *
+     * @param text 格式 yyyy-MM-dd HH:mm
+     * @param zone 时区，解析过程中不能被修改
+     * @return 时间戳（毫秒）
+     * @throws AlarmTimeFormatException 格式错误时抛出，包含出错的位置和原因
+     */
+    public static long parse(CharSequence text, TimeZone zone) {
+        long result = parseInternal(text, zone);
+        if (isError(result)) {
+            throw new AlarmTimeFormatException(text, errorOffset(result), errorReason(result));
+        }
+        return result;
+    }
+
+
+    /**
+     * 按默认时区解析
+     *
+     * @see #parse(CharSequence, TimeZone)
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, TimeZone.getDefault());
+    }
+
+
+    /**
+     * 解析失败时不抛出异常，适合批量导入
+     *
+     * @return 时间戳（毫秒），格式错误时返回{@link #INVALID}
+     */
+    public static long tryParse(CharSequence text, TimeZone zone) {
+        long result = parseInternal(text, zone);
+        return isError(result) ? INVALID : result;
+    }
+
+
+    /**
+     * 由本地时间的各个字段计算时间戳
+     * 夏令时开始时跳过的时间按标准时间计算，与Calendar一致
+     */
+    static long toEpochMillis(int year, int month, int day, int hour, int minute, TimeZone zone) {
+        long local = daysFromCivil(year, month, day) * MILLIS_PER_DAY + (hour * 60L + minute) * MILLIS_PER_MINUTE;
+        int rawOffset = zone.getRawOffset();
+        long standard = local - rawOffset;
+        //先按标准时间得到近似的时刻，再按该时刻的夏令时偏移修正
+        int offset = zone.getOffset(standard);
+        if (offset == rawOffset) {
+            return standard;
+        }
+        long adjusted = local - offset;
+        //修正后回到了标准时间，说明本地时间落在夏令时开始时跳过的区间
+        return zone.getOffset(adjusted) == offset ? adjusted : standard;
+    }
+
+
+    private static long parseInternal(CharSequence text, TimeZone zone) {
+        if (text == null) {
+            return error(0, AlarmTimeFormatException.REASON_EMPTY);
+        }
+        int length = text.length();
+        if (length == 0) {
+            return error(0, AlarmTimeFormatException.REASON_EMPTY);
+        }
+        int index = 0;
+
+        //年，固定4位
+        int year = 0;
+        for (int end = index + 4; index < end; index++) {
+            int digit = index < length ? text.charAt(index) - '0' : -1;
+            if (digit < 0 || digit > 9) {
+                return error(index, AlarmTimeFormatException.REASON_EXPECTED_DIGIT);
+            }
+            year = year * 10 + digit;
+        }
+        if (index >= length || text.charAt(index) != '-') {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_SEPARATOR);
+        }
+        index++;
+
+        int start = index;
+        int month = 0;
+        while (index < length && index - start < 2 && isDigit(text.charAt(index))) {
+            month = month * 10 + text.charAt(index++) - '0';
+        }
+        if (index == start) {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_DIGIT);
+        }
+        if (month < 1 || month > 12) {
+            return error(start, AlarmTimeFormatException.REASON_OUT_OF_RANGE);
+        }
+        if (index >= length || text.charAt(index) != '-') {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_SEPARATOR);
+        }
+        index++;
+
+        start = index;
+        int day = 0;
+        while (index < length && index - start < 2 && isDigit(text.charAt(index))) {
+            day = day * 10 + text.charAt(index++) - '0';
+        }
+        if (index == start) {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_DIGIT);
+        }
+        if (day < 1 || day > daysInMonth(year, month)) {
+            return error(start, AlarmTimeFormatException.REASON_OUT_OF_RANGE);
+        }
+        if (index >= length || text.charAt(index) != ' ') {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_SEPARATOR);
+        }
+        index++;
+
+        start = index;
+        int hour = 0;
+        while (index < length && index - start < 2 && isDigit(text.charAt(index))) {
+            hour = hour * 10 + text.charAt(index++) - '0';
+        }
+        if (index == start) {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_DIGIT);
+        }
+        if (hour > 23) {
+            return error(start, AlarmTimeFormatException.REASON_OUT_OF_RANGE);
+        }
+        if (index >= length || text.charAt(index) != ':') {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_SEPARATOR);
+        }
+        index++;
+
+        start = index;
+        int minute = 0;
+        while (index < length && index - start < 2 && isDigit(text.charAt(index))) {
+            minute = minute * 10 + text.charAt(index++) - '0';
+        }
+        if (index == start) {
+            return error(index, AlarmTimeFormatException.REASON_EXPECTED_DIGIT);
+        }
+        if (minute > 59) {
+            return error(start, AlarmTimeFormatException.REASON_OUT_OF_RANGE);
+        }
+        if (index != length) {
+            return error(index, AlarmTimeFormatException.REASON_TRAILING_TEXT);
+        }
+        return toEpochMillis(year, month, day, hour, minute, zone);
+    }
+
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+
+    static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+
+    /**
+     * 公历日期到1970-01-01的天数
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+
+    private static long error(int offset, int reason) {
+        return ERROR_BASE - (reason * 256L + offset);
+    }
+
+
+    private static boolean isError(long result) {
+        return result <= ERROR_BASE;
+    }
+
+
+    private static int errorOffset(long result) {
+        return (int) ((ERROR_BASE - result) & 0xFF);
+    }
+
+
+    private static int errorReason(long result) {
+        return (int) ((ERROR_BASE - result) >> 8);
+    }
+
+}
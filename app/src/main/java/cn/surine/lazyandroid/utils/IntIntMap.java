@@ -0,0 +1,138 @@
+package cn.surine.lazyandroid;
+
+import java.util.Arrays;
+
+/**
+ * Intro：int到int的哈希表
+ * 开放寻址，键值存放在基本类型数组中，不装箱，增删查均摊O(1)
+ * 非线程安全
+ *
+ * @author sunliwei
+ * @date 2020/5/8 14:10
+ */
+final class IntIntMap {
+
+    private static final float LOAD_FACTOR = 0.5F;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+
+    IntIntMap() {
+        this(16);
+    }
+
+    IntIntMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+
+    /**
+     * @return 不存在时返回defaultValue
+     */
+    int get(int key, int defaultValue) {
+        int index = indexOf(key);
+        return used[index] ? values[index] : defaultValue;
+    }
+
+
+    boolean containsKey(int key) {
+        return used[indexOf(key)];
+    }
+
+
+    void put(int key, int value) {
+        int index = indexOf(key);
+        if (used[index]) {
+            values[index] = value;
+            return;
+        }
+        used[index] = true;
+        keys[index] = key;
+        values[index] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+    }
+
+
+    /**
+     * @return 是否存在
+     */
+    boolean remove(int key) {
+        int index = indexOf(key);
+        if (!used[index]) {
+            return false;
+        }
+        used[index] = false;
+        size--;
+        //线性探测删除后，把后面同一簇中的元素前移，保证查找不中断
+        int mask = keys.length - 1;
+        int next = (index + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            //home不在(index, next]之间时可以移到index
+            if ((next > index && (home <= index || home > next)) || (next < index && home <= index && home > next)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                used[index] = true;
+                used[next] = false;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return true;
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (used[index] && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+
+    private static int hash(int key) {
+        //打散连续的id
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,668 @@
+package cn.surine.lazyandroid;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intro：进程内的分层时间轮定时器
+ * 适合前台时几秒到几分钟的大量短定时，不经过AlarmManager，
+ * 4层、每层64个槽，每个槽是双向链表，添加和取消都是O(1)，到期的定时器在专用线程中执行
+ * 带闹钟id的定时器在进程进入后台时交给{@link AlarmMultiplexer}，回到前台时收回，
+ * 时钟可以替换，在JVM上用假时钟调用advance()即可得到确定的结果
+ * <p>
+ * TimerWheel wheel = new TimerWheel();
+ * wheel.start();
+ * wheel.handOffInBackground(application);
+ * wheel.schedule(id, task, 30, TimeUnit.SECONDS);
+ *
+ * @author sunliwei
+ * @date 2020/5/11 10:00
+ */
+public final class TimerWheel {
+
+    private static final String TAG = "TimerWheel";
+
+    /**
+     * 不交给AlarmManager的定时器
+     */
+    public static final int NO_ALARM_ID = Integer.MIN_VALUE;
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    /**
+     * 时间轮能表示的最大跨度（tick），更远的定时器先放在最高层，转到时再重新放置
+     */
+    private static final long MAX_SPAN = 1L << (WHEEL_BITS * LEVELS);
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+    private static final int STATE_HANDED_OFF = 3;
+
+    /**
+     * 时钟，返回单调递增的毫秒数
+     */
+    public interface Clock {
+        long millis();
+    }
+
+    /**
+     * 交出定时器的回调
+     */
+    public interface HandOffListener {
+
+        /**
+         * @param alarmIds        闹钟id
+         * @param triggerAtMillis 对应的到期时间（RTC，毫秒）
+         */
+        void onHandOff(int[] alarmIds, long[] triggerAtMillis);
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long millis() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    /**
+     * schedule返回的句柄
+     */
+    public static final class Timeout {
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final int alarmId;
+        private long deadlineMillis;
+        private long deadlineTick;
+        private int state;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        /**
+         * 交给AlarmMultiplexer时的触发时间（RTC）
+         */
+        private long handOffAtMillis;
+        /**
+         * 通过handOffToAlarmManager交出时的上下文，取消时用来取消闹钟
+         */
+        private Context alarmContext;
+
+        private Timeout(TimerWheel wheel, Runnable task, int alarmId, long deadlineMillis) {
+            this.wheel = wheel;
+            this.task = task;
+            this.alarmId = alarmId;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+
+        /**
+         * 取消定时器
+         *
+         * 已通过handOffToAlarmManager交出时同时取消AlarmMultiplexer中的闹钟，
+         * 通过handOff(listener)交出时只标记取消，由调用方处理交出的闹钟
+         *
+         * @return 是否取消成功，已执行或已取消时返回false
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+
+
+        public boolean isCancelled() {
+            synchronized (wheel.lock) {
+                return state == STATE_CANCELLED;
+            }
+        }
+
+
+        public boolean isExpired() {
+            synchronized (wheel.lock) {
+                return state == STATE_EXPIRED;
+            }
+        }
+
+
+        /**
+         * @return 到期时间，按时间轮的时钟
+         */
+        public long getDeadline() {
+            synchronized (wheel.lock) {
+                return deadlineMillis;
+            }
+        }
+
+
+        public int getAlarmId() {
+            return alarmId;
+        }
+    }
+
+    /**
+     * 槽，双向链表
+     */
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        /**
+         * 取出整条链表并清空
+         */
+        Timeout clear() {
+            Timeout first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Clock clock;
+    private final long tickMillis;
+    private final long originMillis;
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+
+    /**
+     * 已处理到的tick
+     */
+    private long currentTick;
+    private int pendingCount;
+
+    /**
+     * 已交给AlarmMultiplexer的定时器
+     */
+    private final ArrayList<Timeout> handedOff = new ArrayList<>();
+
+    /**
+     * 当前的专用线程，stop后被替换的线程发现自己不是worker时退出
+     */
+    private volatile Thread worker;
+
+    public TimerWheel() {
+        this(SYSTEM_CLOCK, 10);
+    }
+
+    /**
+     * @param clock      时钟
+     * @param tickMillis 精度（毫秒），定时器最多晚一个tick执行
+     */
+    public TimerWheel(Clock clock, long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.originMillis = clock.millis();
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheels[level][slot] = new Bucket();
+            }
+        }
+    }
+
+
+    /**
+     * 添加一个只在进程内执行的定时器
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(NO_ALARM_ID, task, delay, unit);
+    }
+
+
+    /**
+     * 添加定时器，进入后台时交给AlarmMultiplexer，到期时回调AlarmMultiplexer.OnAlarmListener而不是task
+     *
+     * @param alarmId 闹钟id，为{@link #NO_ALARM_ID}时只在进程内执行
+     */
+    public Timeout schedule(int alarmId, Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task == null");
+        }
+        Timeout timeout = new Timeout(this, task, alarmId, clock.millis() + Math.max(0, unit.toMillis(delay)));
+        synchronized (lock) {
+            insert(timeout);
+            pendingCount++;
+            //到期时间可能早于线程正在等待的槽
+            lock.notifyAll();
+        }
+        return timeout;
+    }
+
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+
+    /**
+     * 处理到当前时间为止到期的定时器，在调用线程执行
+     * start()后由专用线程调用，使用假时钟时可直接调用
+     *
+     * @return 执行的定时器数量
+     * @throws RuntimeException 任务抛出的第一个异常，在所有到期的任务执行完后抛出
+     */
+    public int advance() {
+        long now = clock.millis();
+        ArrayList<Timeout> expired = null;
+        synchronized (lock) {
+            long targetTick = (now - originMillis) / tickMillis;
+            if (pendingCount == 0 && targetTick > currentTick) {
+                //没有定时器时直接跳到目标位置
+                currentTick = targetTick;
+            }
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+                Timeout timeout = wheels[0][(int) (currentTick & WHEEL_MASK)].clear();
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.bucket = null;
+                    timeout.prev = null;
+                    timeout.next = null;
+                    timeout.state = STATE_EXPIRED;
+                    pendingCount--;
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(timeout);
+                    timeout = next;
+                }
+            }
+        }
+        if (expired == null) {
+            return 0;
+        }
+        //锁外执行，任务中可以继续添加或取消定时器；这些定时器已经移出时间轮，一个任务抛出异常也要执行完其余的
+        int count = expired.size();
+        Throwable failure = null;
+        for (int i = 0; i < count; i++) {
+            try {
+                expired.get(i).task.run();
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+        return count;
+    }
+
+
+    /**
+     * 启动专用线程，休眠到下一个有定时器的槽，没有定时器时一直休眠
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Thread self = Thread.currentThread();
+                try {
+                    while (worker == self) {
+                        try {
+                            advance();
+                        } catch (RuntimeException e) {
+                            //任务的异常不影响之后的定时器
+                            Log.e(TAG, "timer task failed", e);
+                        }
+                        synchronized (lock) {
+                            if (worker != self) {
+                                return;
+                            }
+                            try {
+                                if (pendingCount == 0) {
+                                    lock.wait();
+                                } else {
+                                    long wakeAt = originMillis + nextTick() * tickMillis;
+                                    lock.wait(Math.max(1, wakeAt - clock.millis()));
+                                }
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                        }
+                    }
+                } finally {
+                    //异常退出时清空，之后可以重新start()；stop()会先清空，这里不会和它抢锁
+                    if (worker == self) {
+                        synchronized (TimerWheel.this) {
+                            if (worker == self) {
+                                worker = null;
+                            }
+                        }
+                    }
+                }
+            }
+        }, "TimerWheel");
+        worker.start();
+    }
+
+
+    /**
+     * 停止专用线程并等待其退出，未到期的定时器保留
+     * 线程正在执行任务时会等待任务结束，在任务中调用时不等待
+     */
+    public synchronized void stop() {
+        Thread thread = worker;
+        if (thread == null) {
+            return;
+        }
+        worker = null;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (thread == Thread.currentThread()) {
+            return;
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * 取出所有带闹钟id的定时器交给listener，其余定时器保留在时间轮中
+     *
+     * @return 交出的数量
+     */
+    public int handOff(HandOffListener listener) {
+        return handOff(listener, null);
+    }
+
+
+    /**
+     * @param alarmContext 交给AlarmMultiplexer时的上下文，其他listener为null
+     */
+    private int handOff(HandOffListener listener, Context alarmContext) {
+        int[] ids;
+        long[] times;
+        int count = 0;
+        synchronized (lock) {
+            long now = clock.millis();
+            long wallNow = System.currentTimeMillis();
+            ids = new int[pendingCount];
+            times = new long[pendingCount];
+            for (int level = 0; level < LEVELS; level++) {
+                for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                    Bucket bucket = wheels[level][slot];
+                    Timeout timeout = bucket.head;
+                    while (timeout != null) {
+                        Timeout next = timeout.next;
+                        if (timeout.alarmId != NO_ALARM_ID) {
+                            bucket.remove(timeout);
+                            timeout.state = STATE_HANDED_OFF;
+                            timeout.handOffAtMillis = wallNow + Math.max(0, timeout.deadlineMillis - now);
+                            timeout.alarmContext = alarmContext;
+                            pendingCount--;
+                            handedOff.add(timeout);
+                            ids[count] = timeout.alarmId;
+                            times[count++] = timeout.handOffAtMillis;
+                        }
+                        timeout = next;
+                    }
+                }
+            }
+        }
+        if (count > 0) {
+            listener.onHandOff(Arrays.copyOf(ids, count), Arrays.copyOf(times, count));
+        }
+        return count;
+    }
+
+
+    /**
+     * 把带闹钟id的定时器交给AlarmMultiplexer，只注册一次系统闹钟
+     *
+     * @return 交出的数量
+     */
+    public int handOffToAlarmManager(final Context context) {
+        return handOff(new HandOffListener() {
+            @Override
+            public void onHandOff(int[] alarmIds, long[] triggerAtMillis) {
+                AlarmMultiplexer.scheduleAll(context, alarmIds, triggerAtMillis);
+            }
+        }, context.getApplicationContext());
+    }
+
+
+    /**
+     * 收回交给AlarmMultiplexer但还没有触发的定时器，之后由时间轮执行task
+     *
+     * @return 收回的数量
+     */
+    public int reclaimFromAlarmManager(Context context) {
+        Timeout[] candidates;
+        synchronized (lock) {
+            candidates = handedOff.toArray(new Timeout[0]);
+            handedOff.clear();
+        }
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (Timeout timeout : candidates) {
+            //触发时间变了说明已被重新设置，不再属于时间轮
+            if (AlarmMultiplexer.getTriggerTime(timeout.alarmId) != timeout.handOffAtMillis) {
+                continue;
+            }
+            AlarmMultiplexer.cancel(context, timeout.alarmId);
+            synchronized (lock) {
+                //收回的过程中被取消
+                if (timeout.state != STATE_HANDED_OFF) {
+                    continue;
+                }
+                timeout.state = STATE_PENDING;
+                timeout.alarmContext = null;
+                timeout.deadlineMillis = clock.millis() + Math.max(0, timeout.handOffAtMillis - now);
+                insert(timeout);
+                pendingCount++;
+            }
+            count++;
+        }
+        if (count > 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * 所有Activity都不可见时交出带闹钟id的定时器，重新可见时收回
+     */
+    public void handOffInBackground(final Application application) {
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            private int startedCount;
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+                if (startedCount++ == 0) {
+                    reclaimFromAlarmManager(application);
+                }
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+                if (--startedCount == 0) {
+                    handOffToAlarmManager(application);
+                }
+            }
+
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+            }
+        });
+    }
+
+
+    private boolean cancel(Timeout timeout) {
+        Context alarmContext;
+        long handOffAtMillis;
+        synchronized (lock) {
+            if (timeout.state == STATE_PENDING) {
+                timeout.state = STATE_CANCELLED;
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+                pendingCount--;
+                return true;
+            }
+            if (timeout.state != STATE_HANDED_OFF) {
+                return false;
+            }
+            timeout.state = STATE_CANCELLED;
+            handedOff.remove(timeout);
+            alarmContext = timeout.alarmContext;
+            handOffAtMillis = timeout.handOffAtMillis;
+            timeout.alarmContext = null;
+        }
+        //和reclaimFromAlarmManager一样在锁外调用AlarmMultiplexer；触发时间变了说明闹钟已被重新设置，不再属于这个定时器
+        if (alarmContext != null && AlarmMultiplexer.getTriggerTime(timeout.alarmId) == handOffAtMillis) {
+            AlarmMultiplexer.cancel(alarmContext, timeout.alarmId);
+        }
+        return true;
+    }
+
+
+    /**
+     * 下一个需要处理的tick：第0层下一个非空的槽，或高层需要降级的位置，调用方持有锁
+     * 只有高层有定时器时每转一圈第0层醒来一次
+     */
+    private long nextTick() {
+        for (long tick = currentTick + 1; ; tick++) {
+            if ((tick & WHEEL_MASK) == 0 || wheels[0][(int) (tick & WHEEL_MASK)].head != null) {
+                return tick;
+            }
+        }
+    }
+
+
+    /**
+     * 按到期tick放入对应层的槽，调用方持有锁
+     */
+    private void insert(Timeout timeout) {
+        if (pendingCount == 0) {
+            //空闲时没有推进，先追上当前时间，否则下一次advance要逐个tick补上空闲的时间
+            long nowTick = (clock.millis() - originMillis) / tickMillis;
+            if (nowTick > currentTick) {
+                currentTick = nowTick;
+            }
+        }
+        //向上取整，保证不会提前执行
+        long deadlineTick = (timeout.deadlineMillis - originMillis + tickMillis - 1) / tickMillis;
+        timeout.deadlineTick = deadlineTick;
+        //已到期的放到下一个tick
+        place(timeout, currentTick + 1);
+    }
+
+
+    /**
+     * @param minTick 最早放到哪个tick
+     */
+    private void place(Timeout timeout, long minTick) {
+        long expires = Math.max(timeout.deadlineTick, minTick);
+        long delta = expires - currentTick;
+        if (delta >= MAX_SPAN) {
+            expires = currentTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= WHEEL_SIZE) {
+            delta >>>= WHEEL_BITS;
+            level++;
+        }
+        wheels[level][(int) ((expires >>> (level * WHEEL_BITS)) & WHEEL_MASK)].add(timeout);
+    }
+
+
+    /**
+     * 低一层转完一圈时，把高一层对应槽中的定时器重新放置到低层
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if (((currentTick >>> ((level - 1) * WHEEL_BITS)) & WHEEL_MASK) != 0) {
+                return;
+            }
+            Timeout timeout = wheels[level][(int) ((currentTick >>> (level * WHEEL_BITS)) & WHEEL_MASK)].clear();
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.bucket = null;
+                timeout.prev = null;
+                timeout.next = null;
+                //正好在当前tick到期的放到第0层当前的槽，随后就会执行
+                place(timeout, currentTick);
+                timeout = next;
+            }
+        }
+    }
+
+}
@@ -2,32 +2,23 @@ package cn.surine.lazyandroid;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
-import android.graphics.Color;
+import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.GradientDrawable;
-import android.graphics.drawable.LayerDrawable;
-import android.graphics.drawable.RippleDrawable;
-import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.StateListDrawable;
-import android.graphics.drawable.shapes.RoundRectShape;
 import android.os.Build;
+import android.text.Spanned;
 import android.util.AttributeSet;
 import android.view.ViewGroup;
+import android.widget.Checkable;
 
 import androidx.annotation.Px;
 import androidx.annotation.RequiresApi;
 import androidx.appcompat.widget.AppCompatButton;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 
-import static android.graphics.drawable.GradientDrawable.Orientation.BL_TR;
-import static android.graphics.drawable.GradientDrawable.Orientation.BOTTOM_TOP;
-import static android.graphics.drawable.GradientDrawable.Orientation.BR_TL;
-import static android.graphics.drawable.GradientDrawable.Orientation.LEFT_RIGHT;
-import static android.graphics.drawable.GradientDrawable.Orientation.RIGHT_LEFT;
-import static android.graphics.drawable.GradientDrawable.Orientation.TL_BR;
-import static android.graphics.drawable.GradientDrawable.Orientation.TOP_BOTTOM;
-import static android.graphics.drawable.GradientDrawable.Orientation.TR_BL;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 /**
  * Intro：一个可以支持设置shape属性的button/textView
@@ -36,7 +27,7 @@ import static android.graphics.drawable.GradientDrawable.Orientation.TR_BL;
  * @date 2019-08-08 14:34
  */
 @SuppressLint("SupportAnnotationUsage")
-public class ColorfulButton extends AppCompatButton {
+public class ColorfulButton extends AppCompatButton implements Checkable {
 
     Context context;
 
@@ -85,9 +76,85 @@ public class ColorfulButton extends AppCompatButton {
     public static final int TL_BR_INT = 7;
 
     /**
-     * 默认颜色
+     * 使用drawable作为背景绘制（默认）
      */
-    private final int NORMAL_COLOR = Color.parseColor("#DDDDDD");
+    public static final int RENDER_DRAWABLE = 0;
+
+    /**
+     * 在onDraw中直接绘制背景，不创建drawable，不支持水波纹
+     */
+    public static final int RENDER_CANVAS = 1;
+
+    /**
+     * 可以绑定调色板token的颜色字段
+     *
+     * @see #bindColorToken(int, int)
+     */
+    public static final int PALETTE_COLOR = 0;
+    public static final int PALETTE_PRESS_COLOR = 1;
+    public static final int PALETTE_FOCUS_COLOR = 2;
+    public static final int PALETTE_RIPPLE_COLOR = 3;
+    public static final int PALETTE_STROKE_COLOR = 4;
+    public static final int PALETTE_START_COLOR = 5;
+    public static final int PALETTE_CENTER_COLOR = 6;
+    public static final int PALETTE_END_COLOR = 7;
+    private static final int PALETTE_FIELD_COUNT = 8;
+
+    /**
+     * 自定义状态颜色使用的状态掩码，可以组合使用
+     *
+     * @see #setStateColor(int, int)
+     */
+    public static final int STATE_PRESSED = 1;
+    public static final int STATE_FOCUSED = 1 << 1;
+    public static final int STATE_CHECKED = 1 << 2;
+    public static final int STATE_SELECTED = 1 << 3;
+    public static final int STATE_ACTIVATED = 1 << 4;
+    public static final int STATE_DISABLED = 1 << 5;
+
+    private static final int[] CHECKED_STATE_SET = {android.R.attr.state_checked};
+
+    /**
+     * WRAP_CONTENT时的最小尺寸
+     */
+    private static final int NORMAL_WIDTH = 200;
+    private static final int NORMAL_HEIGHT = 100;
+
+    /**
+     * 默认颜色及默认水波纹颜色
+     */
+    static final int DEFAULT_COLOR = 0xFFDDDDDD;
+    static final int DEFAULT_RIPPLE_COLOR = 0x00000000;
+
+    /**
+     * 自定义属性的命名空间，用于不经过TypedArray直接读取属性
+     */
+    private static final String ATTR_NAMESPACE = "http://schemas.android.com/apk/res-auto";
+
+    /**
+     * 脏标记：填充色（普通/按压/聚焦色，渐变色，渐变方向与半径）
+     */
+    static final int DIRTY_FILL = 1;
+
+    /**
+     * 脏标记：边框与虚线
+     */
+    static final int DIRTY_STROKE = 1 << 1;
+
+    /**
+     * 脏标记：圆角
+     */
+    static final int DIRTY_CORNER = 1 << 2;
+
+    /**
+     * 脏标记：水波纹颜色
+     */
+    static final int DIRTY_RIPPLE = 1 << 3;
+
+    /**
+     * 脏标记：结构变化（形状，渐变类型，锁定按压），只能整体重建
+     */
+    static final int DIRTY_STRUCTURE = 1 << 4;
 
     /**
      * shape形状
@@ -109,7 +176,7 @@ public class ColorfulButton extends AppCompatButton {
 
     /**
      * corner radius
-     * 优先级比cornerArray高，因此cornerRadius会覆盖cornerArray的值
+     * 优先级比cornerArray高，大于0时cornerRadius会覆盖cornerArray的值
      */
     @Px
     private float cornerRadius;
@@ -179,6 +246,126 @@ public class ColorfulButton extends AppCompatButton {
      */
     private boolean isLockPressColor = true;
 
+    /**
+     * 自定义状态的掩码及颜色，按添加顺序匹配
+     */
+    private int[] stateMasks;
+    private int[] stateColors;
+
+    /**
+     * 选中状态
+     */
+    private boolean checked;
+
+    /**
+     * 是否使用全局测量缓存，默认关闭
+     */
+    private boolean measureCacheEnabled;
+
+    /**
+     * 是否横向滚动，singleLine也通过它生效，api<29没有getter
+     * 父类构造中就会调用setter，不能有初始值
+     */
+    private boolean horizontallyScrolling;
+
+    /**
+     * 文字版本，用于丢弃过期的setTextAsync结果
+     */
+    private int textGeneration;
+
+
+    /**
+     * 是否与相同样式的button共享背景
+     */
+    private boolean shareBackground;
+
+    /**
+     * 背景绘制模式
+     */
+    private int renderMode;
+
+    /**
+     * 直接绘制模式的绘制器，仅RENDER_CANVAS时创建
+     */
+    private ColorfulCanvasRenderer canvasRenderer;
+
+    /**
+     * 各颜色字段绑定的调色板token，-1为未绑定，绑定时才创建
+     */
+    private int[] paletteTokens;
+
+    /**
+     * 最近一次解析的调色板版本
+     */
+    private int paletteVersion;
+
+    /**
+     * 按形状提供的轮廓，仅api>=21
+     */
+    private ColorfulOutlineProvider outlineProvider;
+
+    /**
+     * 是否按形状裁剪内容，默认关闭
+     */
+    private boolean clipToShape;
+
+    /**
+     * 当前样式描述，字段修改后置空，使用时再重新生成
+     */
+    private ColorfulStyle style;
+
+
+    /**
+     * 批量编辑深度，大于0时setter只记录修改，不刷新背景
+     */
+    private int editDepth;
+
+    /**
+     * 批量编辑期间是否有被推迟的刷新
+     */
+    private boolean pendingUpdate;
+
+    /**
+     * 待刷新的脏标记
+     */
+    private int dirtyFlags;
+
+    /**
+     * 当前背景，用于增量刷新，共享背景时为null，颜色动画中为脱离共享的副本
+     */
+    private ColorfulStateDrawable stateDrawable;
+
+    /**
+     * stateDrawable来自提前构建的共享状态，修改前需要先mutate
+     */
+    private boolean pendingMutate;
+
+    /**
+     * 纯色及渐变色过渡动画，第一次使用时创建
+     */
+    private ColorfulColorAnimator colorAnimator;
+    private ColorfulColorAnimator gradientAnimator;
+
+    /**
+     * 动画结束时写回颜色字段，此时的修改不取消动画
+     */
+    private boolean committingAnimation;
+
+    /**
+     * 背景实际重建次数
+     */
+    private int rebuildCount;
+
+    /**
+     * 在现有drawable上增量刷新的次数
+     */
+    private int incrementalUpdateCount;
+
+    /**
+     * 批量编辑期间被合并掉的刷新次数
+     */
+    private int skippedUpdateCount;
+
 
     public ColorfulButton(Context context) {
         this(context, null);
@@ -191,26 +378,98 @@ public class ColorfulButton extends AppCompatButton {
     public ColorfulButton(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         this.context = context;
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ColorfulButton);
-        shape = typedArray.getInteger(R.styleable.ColorfulButton_shape, RECTANGLE);
-        color = typedArray.getColor(R.styleable.ColorfulButton_color, NORMAL_COLOR);
-        pressColor = typedArray.getColor(R.styleable.ColorfulButton_pressColor, NORMAL_COLOR);
-        focusColor = typedArray.getColor(R.styleable.ColorfulButton_focusColor, NORMAL_COLOR);
-        rippleColor = typedArray.getColor(R.styleable.ColorfulButton_rippleColor, Color.parseColor("#00000000"));
-        cornerRadius = typedArray.getDimension(R.styleable.ColorfulButton_cornerRadius, 8);
-        strokeColor = typedArray.getColor(R.styleable.ColorfulButton_strokeColor, NORMAL_COLOR);
-        strokeWidth = typedArray.getDimension(R.styleable.ColorfulButton_strokeWidth, 0);
+        ColorfulStyle precompiled = findPrecompiledStyle(attrs);
+        if (precompiled != null) {
+            //预编译样式，跳过TypedArray属性解析
+            setStyleFields(precompiled);
+            shareBackground = attrs.getAttributeBooleanValue(ATTR_NAMESPACE, "shareBackground", false);
+            renderMode = attrs.getAttributeIntValue(ATTR_NAMESPACE, "renderMode", RENDER_DRAWABLE);
+        } else {
+            TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ColorfulButton);
+            shape = typedArray.getInteger(R.styleable.ColorfulButton_shape, RECTANGLE);
+            color = typedArray.getColor(R.styleable.ColorfulButton_color, DEFAULT_COLOR);
+            pressColor = typedArray.getColor(R.styleable.ColorfulButton_pressColor, DEFAULT_COLOR);
+            focusColor = typedArray.getColor(R.styleable.ColorfulButton_focusColor, DEFAULT_COLOR);
+            rippleColor = typedArray.getColor(R.styleable.ColorfulButton_rippleColor, DEFAULT_RIPPLE_COLOR);
+            cornerRadius = typedArray.getDimension(R.styleable.ColorfulButton_cornerRadius, 8);
+            strokeColor = typedArray.getColor(R.styleable.ColorfulButton_strokeColor, DEFAULT_COLOR);
+            strokeWidth = typedArray.getDimension(R.styleable.ColorfulButton_strokeWidth, 0);
+
+            gradient = typedArray.getInteger(R.styleable.ColorfulButton_gradient, LINEAR);
+            gradientOrientation = typedArray.getInteger(R.styleable.ColorfulButton_gradientOrientation, 6);
+            startColor = typedArray.getColor(R.styleable.ColorfulButton_startColor, DEFAULT_COLOR);
+            centerColor = typedArray.getColor(R.styleable.ColorfulButton_centerColor, startColor);
+            endColor = typedArray.getColor(R.styleable.ColorfulButton_endColor, centerColor);
+            gradientRadius = typedArray.getDimension(R.styleable.ColorfulButton_gradientRadius, 8);
+            shareBackground = typedArray.getBoolean(R.styleable.ColorfulButton_shareBackground, false);
+            renderMode = typedArray.getInteger(R.styleable.ColorfulButton_renderMode, RENDER_DRAWABLE);
+
+            typedArray.recycle();
+        }
+        update(DIRTY_STRUCTURE);
+    }
 
-        gradient = typedArray.getInteger(R.styleable.ColorfulButton_gradient, LINEAR);
-        gradientOrientation = typedArray.getInteger(R.styleable.ColorfulButton_gradientOrientation, 6);
-        startColor = typedArray.getColor(R.styleable.ColorfulButton_startColor, NORMAL_COLOR);
-        centerColor = typedArray.getColor(R.styleable.ColorfulButton_centerColor, startColor);
-        endColor = typedArray.getColor(R.styleable.ColorfulButton_endColor, centerColor);
-        gradientRadius = typedArray.getDimension(R.styleable.ColorfulButton_gradientRadius, 8);
+
+    /**
+     * 查找布局中app:colorfulStyle指定的预编译样式
+     *
+     * @return 未指定时返回null
+     * @see ColorfulStyles
+     */
+    private ColorfulStyle findPrecompiledStyle(AttributeSet attrs) {
+        if (attrs == null) {
+            return null;
+        }
+        String name = attrs.getAttributeValue(ATTR_NAMESPACE, "colorfulStyle");
+        if (name == null) {
+            return null;
+        }
+        ColorfulStyle precompiled = ColorfulStyles.get(name, getResources().getDisplayMetrics().density);
+        if (precompiled == null) {
+            throw new IllegalArgumentException("colorfulStyle " + name + " is not defined in src/main/colorful/styles.xml");
+        }
+        return precompiled;
+    }
 
 
-        typedArray.recycle();
-        update();
+    /**
+     * 复制样式中的字段
+     */
+    private void setStyleFields(ColorfulStyle style) {
+        shape = style.getShape();
+        color = style.getColor();
+        pressColor = style.getPressColor();
+        focusColor = style.getFocusColor();
+        rippleColor = style.getRippleColor();
+        cornerRadius = style.getCornerRadius();
+        cornerArray = style.getCornerArray();
+        strokeWidth = style.getStrokeWidth();
+        strokeColor = style.getStrokeColor();
+        dashGap = style.getDashGap();
+        dashWidth = style.getDashWidth();
+        gradient = style.getGradient();
+        startColor = style.getStartColor();
+        centerColor = style.getCenterColor();
+        endColor = style.getEndColor();
+        gradientRadius = style.getGradientRadius();
+        gradientOrientation = style.getGradientOrientation();
+        gradientColors = style.getGradientColors();
+        isLockPressColor = style.isLockPressColor();
+        stateMasks = style.getStateMasks();
+        stateColors = style.getStateColors();
+    }
+
+
+    /**
+     * 一次性应用整套样式，只刷新一次
+     * 可配合预编译样式使用，如：button.setStyle(ColorfulStyles.get(ColorfulStyles.PRIMARY, density));
+     *
+     * @param style 样式
+     */
+    public ColorfulButton setStyle(ColorfulStyle style) {
+        setStyleFields(style);
+        update(DIRTY_STRUCTURE);
+        return this;
     }
 
 
@@ -225,6 +484,7 @@ public class ColorfulButton extends AppCompatButton {
             throw new IllegalArgumentException("shape enum is not in the range");
         }
         this.shape = shape;
+        update(DIRTY_STRUCTURE);
         return this;
     }
 
@@ -237,7 +497,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setColor(int color) {
         this.color = color;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -249,7 +509,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setCornerRadius(float cornerRadius) {
         this.cornerRadius = cornerRadius;
-        update();
+        update(DIRTY_CORNER);
         return this;
     }
 
@@ -266,13 +526,14 @@ public class ColorfulButton extends AppCompatButton {
      * set the corner array
      * 设置圆角数组,用于高级圆角
      * 接受8个值，分别为左上，右上，左下，右下4个端点圆心x,y坐标
+     * 需要同时setCornerRadius(0)才会生效
      *
      * @param cornerArray
-     * @see GradientDrawable#setCornerRadii(float[])
+     * @see android.graphics.drawable.GradientDrawable#setCornerRadii(float[])
      */
     public ColorfulButton setCornerArray(float[] cornerArray) {
         this.cornerArray = cornerArray;
-        update();
+        update(DIRTY_CORNER);
         return this;
     }
 
@@ -284,7 +545,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setStrokeWidth(float strokeWidth) {
         this.strokeWidth = strokeWidth;
-        update();
+        update(DIRTY_STROKE);
         return this;
     }
 
@@ -296,7 +557,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setStrokeColor(int strokeColor) {
         this.strokeColor = strokeColor;
-        update();
+        update(DIRTY_STROKE);
         return this;
     }
 
@@ -308,7 +569,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setDashGap(float dashGap) {
         this.dashGap = dashGap;
-        update();
+        update(DIRTY_STROKE);
         return this;
     }
 
@@ -320,7 +581,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setDashWidth(float dashWidth) {
         this.dashWidth = dashWidth;
-        update();
+        update(DIRTY_STROKE);
         return this;
     }
 
@@ -332,7 +593,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setPressColor(int pressColor) {
         this.pressColor = pressColor;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -344,7 +605,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setFocusColor(int focusColor) {
         this.focusColor = focusColor;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -356,7 +617,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setRippleColor(int rippleColor) {
         this.rippleColor = rippleColor;
-        update();
+        update(DIRTY_RIPPLE);
         return this;
     }
 
@@ -368,7 +629,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setGradient(int gradient) {
         this.gradient = gradient;
-        update();
+        update(DIRTY_STRUCTURE);
         return this;
     }
 
@@ -380,7 +641,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setGradientOrientation(int gradientOrientation) {
         this.gradientOrientation = gradientOrientation;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -392,7 +653,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setGradientRadius(float gradientRadius) {
         this.gradientRadius = gradientRadius;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -404,7 +665,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setEndColor(int endColor) {
         this.endColor = endColor;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -415,7 +676,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setCenterColor(int centerColor) {
         this.centerColor = centerColor;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -427,7 +688,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setStartColor(int startColor) {
         this.startColor = startColor;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -445,7 +706,7 @@ public class ColorfulButton extends AppCompatButton {
      */
     public ColorfulButton setGradientColors(int[] gradientColors) {
         this.gradientColors = gradientColors;
-        update();
+        update(DIRTY_FILL);
         return this;
     }
 
@@ -459,164 +720,785 @@ public class ColorfulButton extends AppCompatButton {
      * @param lockPressColor true 锁定（背景和按压一致）
      */
     public ColorfulButton setLockPressColor(boolean lockPressColor) {
-        boolean condition = (startColor == NORMAL_COLOR && centerColor == NORMAL_COLOR && endColor == NORMAL_COLOR)
-                && gradientColors == null;
-        if (condition) {
+        if (!getStyle().hasGradient()) {
             throw new IllegalArgumentException("shape solid without gradient isn't support lock press color");
         }
         isLockPressColor = lockPressColor;
-        update();
+        update(DIRTY_STRUCTURE);
         return this;
     }
 
 
     /**
-     * 刷新当前UI
+     * 与相同样式的button共享背景
+     * 开启后背景从全局缓存中获取，适合列表中大量样式相同的button
+     * 共享的背景不能直接修改，因此开启后每次修改都会按新样式重新获取背景
+     *
+     * @param shareBackground true 共享
+     * @see ColorfulDrawableCache
      */
-    private void update() {
-        //版本控制
-        if (Build.VERSION.SDK_INT >= 21) {
-            LayerDrawable layerDrawable = new LayerDrawable(new Drawable[]{addStateDrawable(), initRipple()});
-            setBackground(layerDrawable);
-        } else if (Build.VERSION.SDK_INT >= 16) {
-            setBackground(addStateDrawable());
-        } else {
-            setBackgroundDrawable(addStateDrawable());
+    public ColorfulButton setShareBackground(boolean shareBackground) {
+        this.shareBackground = shareBackground;
+        update(DIRTY_STRUCTURE);
+        return this;
+    }
+
+
+    /**
+     * 按形状裁剪内容（如超出圆角的图片），仅api>=21，默认关闭
+     * 只对矩形（统一圆角）和椭圆生效，LINE、RING和非统一圆角不会裁剪；轮廓始终用于elevation阴影
+     *
+     * @param clipToShape true 裁剪
+     */
+    public ColorfulButton setClipToShape(boolean clipToShape) {
+        if (this.clipToShape != clipToShape) {
+            this.clipToShape = clipToShape;
+            if (Build.VERSION.SDK_INT >= 21) {
+                updateOutline();
+            }
         }
+        return this;
     }
 
 
-    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
-    private RippleDrawable initRipple() {
+    /**
+     * 设置背景绘制模式
+     * RENDER_CANVAS直接在onDraw中绘制，每帧不产生对象，但不支持水波纹
+     *
+     * @param renderMode RENDER_DRAWABLE 或 RENDER_CANVAS
+     */
+    public ColorfulButton setRenderMode(int renderMode) {
+        if (renderMode != RENDER_DRAWABLE && renderMode != RENDER_CANVAS) {
+            throw new IllegalArgumentException("render mode is not in the range");
+        }
+        this.renderMode = renderMode;
+        update(DIRTY_STRUCTURE);
+        return this;
+    }
+
+
+    /**
+     * 设置任意状态组合的背景颜色，如选中，禁用，选中且按压
+     * 按添加顺序匹配，先添加的优先，且优先于聚焦和按压颜色；自定义状态只使用纯色
+     * 如：button.setStateColor(ColorfulButton.STATE_CHECKED | ColorfulButton.STATE_PRESSED, c1)
+     * .setStateColor(ColorfulButton.STATE_CHECKED, c2);
+     *
+     * @param stateMask 状态掩码，STATE_*的组合
+     * @param color     颜色
+     */
+    public ColorfulButton setStateColor(int stateMask, int color) {
+        ColorfulStateTable.checkMask(stateMask);
+        int count = stateMasks == null ? 0 : stateMasks.length;
+        for (int i = 0; i < count; i++) {
+            if (stateMasks[i] == stateMask) {
+                //只修改颜色，层数不变，可以增量刷新
+                stateColors[i] = color;
+                update(DIRTY_FILL);
+                return this;
+            }
+        }
+        if (count >= ColorfulStateTable.MAX_CUSTOM_STATES) {
+            throw new IllegalArgumentException("too many custom states, max " + ColorfulStateTable.MAX_CUSTOM_STATES);
+        }
+        stateMasks = stateMasks == null ? new int[1] : Arrays.copyOf(stateMasks, count + 1);
+        stateColors = stateColors == null ? new int[1] : Arrays.copyOf(stateColors, count + 1);
+        stateMasks[count] = stateMask;
+        stateColors[count] = color;
+        update(DIRTY_STRUCTURE);
+        return this;
+    }
+
+
+    /**
+     * 清除所有自定义状态颜色
+     */
+    public ColorfulButton clearStateColors() {
+        if (stateMasks != null) {
+            stateMasks = null;
+            stateColors = null;
+            update(DIRTY_STRUCTURE);
+        }
+        return this;
+    }
+
+
+    @Override
+    public void setChecked(boolean checked) {
+        if (this.checked != checked) {
+            this.checked = checked;
+            refreshDrawableState();
+        }
+    }
+
+
+    @Override
+    public boolean isChecked() {
+        return checked;
+    }
+
+
+    @Override
+    public void toggle() {
+        setChecked(!checked);
+    }
 
-        //添加默认状态颜色为水波纹颜色，避免点击闪烁
-        int[][] stateList = new int[][]{
-                new int[]{android.R.attr.state_pressed},
-                new int[]{}
-        };
 
-        int[] stateColorList = new int[]{
-                rippleColor,
-                rippleColor
-        };
-        ColorStateList colorStateList = new ColorStateList(stateList, stateColorList);
+    @Override
+    protected int[] onCreateDrawableState(int extraSpace) {
+        int[] drawableState = super.onCreateDrawableState(extraSpace + 1);
+        if (checked) {
+            mergeDrawableStates(drawableState, CHECKED_STATE_SET);
+        }
+        return drawableState;
+    }
+
+
+    /**
+     * 获取当前样式描述
+     */
+    public ColorfulStyle getStyle() {
+        if (style == null) {
+            style = new ColorfulStyle.Builder()
+                    .setShape(shape)
+                    .setColor(color)
+                    .setPressColor(pressColor)
+                    .setFocusColor(focusColor)
+                    .setRippleColor(rippleColor)
+                    .setCornerRadius(cornerRadius)
+                    .setCornerArray(cornerArray)
+                    .setStrokeWidth(strokeWidth)
+                    .setStrokeColor(strokeColor)
+                    .setDashGap(dashGap)
+                    .setDashWidth(dashWidth)
+                    .setGradient(gradient)
+                    .setStartColor(startColor)
+                    .setCenterColor(centerColor)
+                    .setEndColor(endColor)
+                    .setGradientRadius(gradientRadius)
+                    .setGradientOrientation(gradientOrientation)
+                    .setGradientColors(gradientColors)
+                    .setLockPressColor(isLockPressColor)
+                    .setStateColors(stateMasks, stateColors)
+                    .build();
+        }
+        return style;
+    }
+
+
+    /**
+     * 开始批量编辑
+     * 在对应的apply()之前，所有setter只记录修改，不会重建背景
+     * 支持嵌套，最外层apply()时统一刷新一次
+     * <p>
+     * 如：button.edit().setColor(c).setCornerRadius(r).setStrokeWidth(w).apply();
+     */
+    public ColorfulButton edit() {
+        editDepth++;
+        return this;
+    }
 
-        //控制水波纹边界
-        float[] outRadius = new float[]{cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius};
-        RoundRectShape roundRectShape = new RoundRectShape(outRadius, null, null);
-        ShapeDrawable maskDrawable = new ShapeDrawable();
-        maskDrawable.setShape(roundRectShape);
 
-        RippleDrawable rippleDrawable = new RippleDrawable(colorStateList, null, maskDrawable);
-        return rippleDrawable;
+    /**
+     * 结束批量编辑
+     * 最外层apply()时，如果期间有修改则只重建一次背景
+     */
+    public ColorfulButton apply() {
+        if (editDepth == 0) {
+            throw new IllegalStateException("apply() called without a matching edit()");
+        }
+        editDepth--;
+        if (editDepth == 0 && pendingUpdate) {
+            pendingUpdate = false;
+            rebuild();
+        }
+        return this;
     }
 
 
-    //构建selector
-    private StateListDrawable addStateDrawable() {
-        StateListDrawable stateListDrawable = new StateListDrawable();
-        Drawable normal = copy(color, true);
-        Drawable pressed = copy(pressColor, isLockPressColor);
-        Drawable focus = copy(focusColor, isLockPressColor);
+    /**
+     * 刷新当前UI，批量编辑期间只做标记
+     *
+     * @param dirty 本次修改涉及的脏标记
+     */
+    private void update(int dirty) {
+        if ((dirty & DIRTY_FILL) != 0 && !committingAnimation) {
+            //直接设置的颜色优先于动画
+            stopColorAnimation(colorAnimator);
+            stopColorAnimation(gradientAnimator);
+        }
+        dirtyFlags |= dirty;
+        style = null;
+        if (editDepth > 0) {
+            pendingUpdate = true;
+            skippedUpdateCount++;
+            return;
+        }
+        rebuild();
+    }
 
-        stateListDrawable.addState(new int[]{android.R.attr.state_enabled, android.R.attr.state_focused}, focus);
-        stateListDrawable.addState(new int[]{android.R.attr.state_pressed, android.R.attr.state_enabled}, pressed);
-        stateListDrawable.addState(new int[]{android.R.attr.state_focused}, focus);
-        stateListDrawable.addState(new int[]{android.R.attr.state_pressed}, pressed);
-        stateListDrawable.addState(new int[]{android.R.attr.state_enabled}, normal);
-        stateListDrawable.addState(new int[]{}, normal);
-        return stateListDrawable;
+
+    /**
+     * 按脏标记刷新背景
+     * 结构变化时整体重建，否则直接修改现有drawable
+     */
+    private void rebuild() {
+        int dirty = dirtyFlags;
+        dirtyFlags = 0;
+        if (Build.VERSION.SDK_INT >= 21) {
+            updateOutline();
+        }
+        if (renderMode == RENDER_CANVAS) {
+            rebuildCount++;
+            updateCanvasRenderer();
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= 21 && !shareBackground && stateDrawable != null && (dirty & DIRTY_STRUCTURE) == 0) {
+            incrementalUpdateCount++;
+            ensureOwnBackground();
+            //drawable自身会invalidate，无需重新setBackground
+            stateDrawable.update(new ColorfulDrawableFactory(getStyle()), dirty);
+            return;
+        }
+        rebuildCount++;
+        if (shareBackground) {
+            setSharedBackground();
+        } else {
+            setOwnBackground();
+        }
     }
 
 
     /**
-     * 解决对象引用copy引起的问题
+     * 设置独占的背景
+     * 样式已提前构建时直接从构建好的状态创建，mutate推迟到attach或第一次修改时
+     * 否则新建，各状态drawable及水波纹在第一次用到时才构建
      *
-     * @param copyColor 涉及到的color
-     * @param isLock    是否锁定按压颜色
+     * @see ColorfulDrawableCache#prewarm
      */
-    private Drawable copy(int copyColor, boolean isLock) {
+    private void setOwnBackground() {
+        Drawable.ConstantState prewarmed = ColorfulDrawableCache.peek(getStyle());
+        if (prewarmed != null) {
+            stateDrawable = (ColorfulStateDrawable) prewarmed.newDrawable(getResources());
+            pendingMutate = true;
+        } else {
+            stateDrawable = new ColorfulStateDrawable(new ColorfulDrawableFactory(getStyle()));
+            pendingMutate = false;
+        }
+        setBackgroundCompat(stateDrawable);
+    }
+
 
-        GradientDrawable drawable;
-        if (isLock) {
-            drawable = new GradientDrawable(map(), gradientColors == null ? new int[]{startColor, centerColor, endColor} : gradientColors);
-            boolean condition = (startColor == NORMAL_COLOR && centerColor == NORMAL_COLOR && endColor == NORMAL_COLOR)
-                    && gradientColors == null;
-            if (condition) {
-                drawable.setColor(copyColor);
+    /**
+     * 与共享状态脱离，之后可以直接修改背景
+     */
+    private void ensureOwnBackground() {
+        if (pendingMutate) {
+            stateDrawable.mutate();
+            pendingMutate = false;
+        }
+    }
+
+
+    /**
+     * 过渡到目标颜色，由Choreographer驱动
+     * 每帧直接修改现有drawable或画笔，不重建背景，动画结束时才写回颜色字段
+     * 动画中再次调用会从当前显示的颜色过渡到新目标，直接设置填充色会取消动画
+     * api<16或设置了渐变色时直接设置为目标颜色
+     *
+     * @param toColor    目标颜色
+     * @param durationMs 时长
+     */
+    public ColorfulButton animateColor(int toColor, long durationMs) {
+        if (Build.VERSION.SDK_INT < 16 || getStyle().hasGradient()) {
+            return setColor(toColor);
+        }
+        if (colorAnimator == null) {
+            colorAnimator = new ColorfulColorAnimator(this, false);
+        }
+        colorAnimator.start(color, toColor, durationMs);
+        return this;
+    }
+
+
+    /**
+     * 过渡到目标渐变色，规则与animateColor一致
+     * 需要已设置渐变色，且颜色数量与当前渐变一致，api<16时直接设置为目标渐变色
+     *
+     * @param toColors   目标渐变色
+     * @param durationMs 时长
+     */
+    public ColorfulButton animateGradient(int[] toColors, long durationMs) {
+        int[] fromColors = getStyle().resolveGradientColors();
+        if (!getStyle().hasGradient()) {
+            throw new IllegalStateException("animateGradient requires gradient colors to be set first");
+        }
+        if (toColors == null || toColors.length != fromColors.length) {
+            throw new IllegalArgumentException("gradient colors count must match the current gradient");
+        }
+        if (Build.VERSION.SDK_INT < 16) {
+            commitGradientColors(toColors);
+            return this;
+        }
+        if (gradientAnimator == null) {
+            gradientAnimator = new ColorfulColorAnimator(this, true);
+        }
+        gradientAnimator.start(fromColors, toColors, durationMs);
+        return this;
+    }
+
+
+    /**
+     * 取消颜色动画，停在当前显示的颜色
+     */
+    public ColorfulButton cancelColorAnimation() {
+        if (colorAnimator != null && colorAnimator.cancel()) {
+            onColorAnimationEnd(colorAnimator);
+        }
+        if (gradientAnimator != null && gradientAnimator.cancel()) {
+            onColorAnimationEnd(gradientAnimator);
+        }
+        return this;
+    }
+
+
+    public boolean isColorAnimating() {
+        return (colorAnimator != null && colorAnimator.isRunning())
+                || (gradientAnimator != null && gradientAnimator.isRunning());
+    }
+
+
+    /**
+     * 动画的一帧，只修改显示，不修改颜色字段
+     */
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    void onColorAnimationFrame(ColorfulColorAnimator animator) {
+        if (renderMode == RENDER_CANVAS) {
+            if (canvasRenderer != null) {
+                if (animator.isGradient()) {
+                    canvasRenderer.setAnimatedColors(animator.currentColors());
+                } else {
+                    canvasRenderer.setAnimatedColor(animator.currentColor());
+                }
+                invalidate();
             }
+            return;
+        }
+        ColorfulStateDrawable drawable = obtainAnimatedBackground();
+        if (drawable == null) {
+            return;
+        }
+        if (animator.isGradient()) {
+            drawable.applyGradientColors(animator.currentColors(), isLockPressColor);
         } else {
-            drawable = new GradientDrawable();
-            drawable.setColor(copyColor);
+            drawable.applyFillColor(animator.currentColor());
         }
+    }
 
-        drawable.setShape(shape);
-        drawable.setCornerRadii(cornerArray);
-        drawable.setCornerRadius(cornerRadius);
-        drawable.setStroke((int) strokeWidth, strokeColor, dashWidth, dashGap);
-        drawable.setGradientType(gradient);
-        drawable.setGradientRadius(gradientRadius);
 
-        return drawable;
+    /**
+     * 动画结束或取消，将当前显示的颜色写回颜色字段
+     */
+    void onColorAnimationEnd(ColorfulColorAnimator animator) {
+        if (canvasRenderer != null) {
+            canvasRenderer.clearAnimated(animator.isGradient());
+        }
+        committingAnimation = true;
+        try {
+            if (animator.isGradient()) {
+                commitGradientColors(animator.currentColors());
+            } else {
+                setColor(animator.currentColor());
+            }
+        } finally {
+            committingAnimation = false;
+        }
     }
 
 
     /**
-     * 测量
+     * 直接设置填充色时停止动画，新的颜色会在刷新时覆盖动画的颜色
      */
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int width = MeasureSpec.getSize(widthMeasureSpec);
-        int height = MeasureSpec.getSize(heightMeasureSpec);
-        final int normalWidth = 200;
-        final int normalHeight = 100;
-        if (getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT && getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT) {
-            setMeasuredDimension(normalWidth, normalHeight);
-        } else if (getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT) {
-            setMeasuredDimension(normalWidth, height);
-        } else if (getLayoutParams().height == ViewGroup.LayoutParams.WRAP_CONTENT) {
-            setMeasuredDimension(width, normalHeight);
+    private void stopColorAnimation(ColorfulColorAnimator animator) {
+        if (animator != null && animator.cancel() && canvasRenderer != null) {
+            canvasRenderer.clearAnimated(animator.isGradient());
+        }
+    }
+
+
+    /**
+     * 写回渐变色，保持原来使用三色还是多色数组
+     */
+    private void commitGradientColors(int[] colors) {
+        if (gradientColors == null && colors.length == 3) {
+            edit().setStartColor(colors[0]).setCenterColor(colors[1]).setEndColor(colors[2]).apply();
         } else {
-            setMeasuredDimension(width, height);
+            setGradientColors(colors.clone());
         }
     }
 
 
     /**
-     * 渐变方位映射表
+     * 动画中修改的背景，共享的背景先脱离缓存，动画结束刷新时重新从缓存获取
      */
-    private GradientDrawable.Orientation map() {
-        GradientDrawable.Orientation orientation = null;
-        switch (gradientOrientation) {
-            case 0:
-                orientation = TOP_BOTTOM;
-                break;
-            case 1:
-                orientation = TR_BL;
+    private ColorfulStateDrawable obtainAnimatedBackground() {
+        if (stateDrawable == null) {
+            Drawable background = getBackground();
+            if (!(background instanceof ColorfulStateDrawable)) {
+                return null;
+            }
+            stateDrawable = (ColorfulStateDrawable) background.mutate();
+            pendingMutate = false;
+        }
+        ensureOwnBackground();
+        return stateDrawable;
+    }
+
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (stateDrawable != null) {
+            ensureOwnBackground();
+        }
+        if (paletteTokens != null) {
+            ColorfulPaletteManager.register(this);
+            //未attach期间调色板可能已经切换
+            ColorfulPalette palette = ColorfulPaletteManager.getPalette();
+            if (palette != null && paletteVersion != ColorfulPaletteManager.getVersion()) {
+                applyPalette(palette, ColorfulPaletteManager.getVersion());
+            }
+        }
+    }
+
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //detach后不再有帧回调，直接结束动画
+        if (colorAnimator != null) {
+            colorAnimator.end();
+        }
+        if (gradientAnimator != null) {
+            gradientAnimator.end();
+        }
+        if (paletteTokens != null) {
+            ColorfulPaletteManager.unregister(this);
+        }
+    }
+
+
+    /**
+     * 将颜色字段绑定到调色板token，切换调色板时自动更新
+     * 绑定后直接调用对应setter设置的颜色会在下次切换调色板时被覆盖
+     *
+     * @param field PALETTE_COLOR，PALETTE_PRESS_COLOR等
+     * @param token ColorfulPalette.token()返回的token
+     * @see ColorfulPaletteManager#setPalette(ColorfulPalette)
+     */
+    public ColorfulButton bindColorToken(int field, int token) {
+        if (field < 0 || field >= PALETTE_FIELD_COUNT) {
+            throw new IllegalArgumentException("palette field is not in the range");
+        }
+        if (paletteTokens == null) {
+            paletteTokens = new int[PALETTE_FIELD_COUNT];
+            Arrays.fill(paletteTokens, -1);
+            if (isAttachedToWindowCompat()) {
+                ColorfulPaletteManager.register(this);
+            }
+        }
+        paletteTokens[field] = token;
+        ColorfulPalette palette = ColorfulPaletteManager.getPalette();
+        if (palette != null) {
+            applyPalette(palette, ColorfulPaletteManager.getVersion());
+        }
+        return this;
+    }
+
+
+    /**
+     * 解除颜色字段的token绑定，保留当前颜色
+     */
+    public ColorfulButton unbindColorToken(int field) {
+        if (paletteTokens != null && field >= 0 && field < PALETTE_FIELD_COUNT) {
+            paletteTokens[field] = -1;
+        }
+        return this;
+    }
+
+
+    /**
+     * 按调色板更新绑定的颜色，所有字段合并为一次刷新
+     *
+     * @return 是否有颜色变化
+     */
+    boolean applyPalette(ColorfulPalette palette, int version) {
+        paletteVersion = version;
+        if (paletteTokens == null) {
+            return false;
+        }
+        boolean changed = false;
+        edit();
+        for (int field = 0; field < PALETTE_FIELD_COUNT; field++) {
+            int token = paletteTokens[field];
+            if (token < 0) {
+                continue;
+            }
+            int current = getPaletteColor(field);
+            int resolved = palette.resolve(token, current);
+            if (resolved != current) {
+                setPaletteColor(field, resolved);
+                changed = true;
+            }
+        }
+        apply();
+        return changed;
+    }
+
+
+    private int getPaletteColor(int field) {
+        switch (field) {
+            case PALETTE_PRESS_COLOR:
+                return pressColor;
+            case PALETTE_FOCUS_COLOR:
+                return focusColor;
+            case PALETTE_RIPPLE_COLOR:
+                return rippleColor;
+            case PALETTE_STROKE_COLOR:
+                return strokeColor;
+            case PALETTE_START_COLOR:
+                return startColor;
+            case PALETTE_CENTER_COLOR:
+                return centerColor;
+            case PALETTE_END_COLOR:
+                return endColor;
+            default:
+                return color;
+        }
+    }
+
+
+    private void setPaletteColor(int field, int value) {
+        switch (field) {
+            case PALETTE_PRESS_COLOR:
+                setPressColor(value);
                 break;
-            case 2:
-                orientation = RIGHT_LEFT;
+            case PALETTE_FOCUS_COLOR:
+                setFocusColor(value);
                 break;
-            case 3:
-                orientation = BR_TL;
+            case PALETTE_RIPPLE_COLOR:
+                setRippleColor(value);
                 break;
-            case 4:
-                orientation = BOTTOM_TOP;
+            case PALETTE_STROKE_COLOR:
+                setStrokeColor(value);
                 break;
-            case 5:
-                orientation = BL_TR;
+            case PALETTE_START_COLOR:
+                setStartColor(value);
                 break;
-            case 6:
-                orientation = LEFT_RIGHT;
+            case PALETTE_CENTER_COLOR:
+                setCenterColor(value);
                 break;
-            case 7:
-                orientation = TL_BR;
+            case PALETTE_END_COLOR:
+                setEndColor(value);
                 break;
             default:
-                orientation = LEFT_RIGHT;
+                setColor(value);
                 break;
         }
-        return orientation;
+    }
+
+
+    private boolean isAttachedToWindowCompat() {
+        return Build.VERSION.SDK_INT >= 19 ? isAttachedToWindow() : getWindowToken() != null;
+    }
+
+
+    /**
+     * 按形状和圆角更新轮廓，只在轮廓变化时重新计算
+     * 轮廓用于elevation阴影，开启clipToShape且形状支持时才裁剪
+     */
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private void updateOutline() {
+        if (outlineProvider == null) {
+            outlineProvider = new ColorfulOutlineProvider();
+            setOutlineProvider(outlineProvider);
+        }
+        if (outlineProvider.setStyle(getStyle())) {
+            invalidateOutline();
+        }
+        boolean clip = clipToShape && outlineProvider.canClip();
+        if (getClipToOutline() != clip) {
+            setClipToOutline(clip);
+        }
+    }
+
+
+    /**
+     * 直接绘制模式下移除drawable背景，交给onDraw绘制
+     */
+    private void updateCanvasRenderer() {
+        if (canvasRenderer == null) {
+            canvasRenderer = new ColorfulCanvasRenderer();
+        }
+        canvasRenderer.setStyle(getStyle());
+        stateDrawable = null;
+        pendingMutate = false;
+        if (getBackground() != null) {
+            setBackgroundCompat(null);
+        }
+        invalidate();
+    }
+
+
+    /**
+     * 从全局缓存获取背景，未命中时构建并缓存
+     * 共享的背景不保留引用，避免被增量刷新修改
+     */
+    private void setSharedBackground() {
+        ColorfulStyle current = getStyle();
+        Drawable.ConstantState state = ColorfulDrawableCache.get(current);
+        if (state == null) {
+            state = new ColorfulStateDrawable(new ColorfulDrawableFactory(current)).getConstantState();
+            ColorfulDrawableCache.put(current, state);
+        }
+        stateDrawable = null;
+        pendingMutate = false;
+        setBackgroundCompat(state.newDrawable(getResources()));
+    }
+
+
+    private void setBackgroundCompat(Drawable background) {
+        if (Build.VERSION.SDK_INT >= 16) {
+            setBackground(background);
+        } else {
+            setBackgroundDrawable(background);
+        }
+    }
+
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (renderMode == RENDER_CANVAS && canvasRenderer != null) {
+            //与View绘制背景一致，背景不随内容滚动
+            int scrollX = getScrollX();
+            int scrollY = getScrollY();
+            canvas.translate(scrollX, scrollY);
+            canvasRenderer.draw(canvas, getWidth(), getHeight(), getDrawableState());
+            canvas.translate(-scrollX, -scrollY);
+        }
+        super.onDraw(canvas);
+    }
+
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        if (renderMode == RENDER_CANVAS) {
+            invalidate();
+        }
+    }
+
+
+    /**
+     * 测量
+     * 按文字测量，WRAP_CONTENT时不小于默认尺寸；开启测量缓存后，
+     * 列表中复用的button绑定相同文字时不再重新测量，文字排版推迟到绘制时
+     *
+     * @see ColorfulMeasureCache
+     */
+    @SuppressLint("NewApi")
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        //带样式的文字可能改变测量结果，不使用缓存；api<16读取不到测量相关的属性
+        boolean cacheable = measureCacheEnabled && Build.VERSION.SDK_INT >= 16 && !(getText() instanceof Spanned);
+        if (cacheable) {
+            Long cached = ColorfulMeasureCache.get(this, widthMeasureSpec, heightMeasureSpec);
+            if (cached != null) {
+                setMeasuredDimension((int) (cached >>> 32), (int) (long) cached);
+                return;
+            }
+        }
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        ViewGroup.LayoutParams params = getLayoutParams();
+        if (params != null && (params.width == ViewGroup.LayoutParams.WRAP_CONTENT
+                || params.height == ViewGroup.LayoutParams.WRAP_CONTENT)) {
+            int widthAndState = getMeasuredWidthAndState();
+            int heightAndState = getMeasuredHeightAndState();
+            if (params.width == ViewGroup.LayoutParams.WRAP_CONTENT && getMeasuredWidth() < NORMAL_WIDTH) {
+                widthAndState = resolveSizeAndState(NORMAL_WIDTH, widthMeasureSpec, 0);
+            }
+            if (params.height == ViewGroup.LayoutParams.WRAP_CONTENT && getMeasuredHeight() < NORMAL_HEIGHT) {
+                heightAndState = resolveSizeAndState(NORMAL_HEIGHT, heightMeasureSpec, 0);
+            }
+            setMeasuredDimension(widthAndState, heightAndState);
+        }
+        if (cacheable) {
+            ColorfulMeasureCache.put(this, widthMeasureSpec, heightMeasureSpec,
+                    getMeasuredWidthAndState(), getMeasuredHeightAndState());
+        }
+    }
+
+
+    /**
+     * 是否使用全局测量缓存，默认关闭
+     * 适合列表中大量复用、文字重复的button，缓存key包含TextView测量用到的属性，
+     * 自定义的TransformationMethod按类型区分，转换结果随状态变化时不要开启
+     */
+    public ColorfulButton setMeasureCacheEnabled(boolean measureCacheEnabled) {
+        if (this.measureCacheEnabled != measureCacheEnabled) {
+            this.measureCacheEnabled = measureCacheEnabled;
+            requestLayout();
+        }
+        return this;
+    }
+
+
+    @Override
+    public void setHorizontallyScrolling(boolean whether) {
+        horizontallyScrolling = whether;
+        super.setHorizontallyScrolling(whether);
+    }
+
+
+    /**
+     * 是否横向滚动，供测量缓存使用
+     */
+    boolean isHorizontallyScrolling() {
+        return horizontallyScrolling;
+    }
+
+
+    /**
+     * 在后台线程预先计算文字排版，完成后在主线程设置，适合较长的文字
+     * 多次调用时只设置最后一次的结果
+     *
+     * @param text     文字
+     * @param executor 后台线程
+     */
+    public void setTextAsync(final CharSequence text, Executor executor) {
+        final int generation = ++textGeneration;
+        final PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(this);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final PrecomputedTextCompat precomputed = PrecomputedTextCompat.create(text, params);
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == textGeneration) {
+                            TextViewCompat.setPrecomputedText(ColorfulButton.this, precomputed);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+
+    @Override
+    public void setText(CharSequence text, BufferType type) {
+        //直接设置的文字覆盖尚未完成的setTextAsync
+        textGeneration++;
+        super.setText(text, type);
     }
 
 
@@ -700,5 +1582,44 @@ public class ColorfulButton extends AppCompatButton {
         return isLockPressColor;
     }
 
+
+    public int getRenderMode() {
+        return renderMode;
+    }
+
+
+    public boolean isShareBackground() {
+        return shareBackground;
+    }
+
+
+    public boolean isEditing() {
+        return editDepth > 0;
+    }
+
+
+    /**
+     * 背景实际重建次数
+     */
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+
+    /**
+     * 批量编辑合并掉的刷新次数
+     */
+    public int getSkippedUpdateCount() {
+        return skippedUpdateCount;
+    }
+
+
+    /**
+     * 在现有drawable上增量刷新的次数
+     */
+    public int getIncrementalUpdateCount() {
+        return incrementalUpdateCount;
+    }
+
 }
 
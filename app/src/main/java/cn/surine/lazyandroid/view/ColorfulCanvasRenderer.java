@@ -0,0 +1,208 @@
+package cn.surine.lazyandroid;
+
+import android.graphics.Canvas;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+import java.util.Arrays;
+
+/**
+ * Intro：ColorfulButton的直接绘制模式
+ * 不经过LayerDrawable/StateListDrawable/GradientDrawable，在onDraw中直接绘制形状，边框，虚线和渐变
+ * Paint，Path，Shader均复用，只在样式或尺寸变化时重新计算，绘制一帧不产生对象
+ *
+ * @author sunliwei
+ * @date 2020/4/10 16:05
+ */
+class ColorfulCanvasRenderer {
+
+    /**
+     * GradientDrawable中RING的默认内半径比例和厚度比例
+     */
+    private static final float RING_INNER_RADIUS_RATIO = 3F;
+    private static final float RING_THICKNESS_RATIO = 9F;
+
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+    private final RectF rect = new RectF();
+    private final float[] radii = new float[8];
+
+    private ColorfulStyle style;
+    private Shader shader;
+    private int width = -1;
+    private int height = -1;
+    private boolean geometryDirty = true;
+    private boolean shaderDirty = true;
+
+    /**
+     * 颜色动画中的普通状态颜色和渐变色，覆盖样式中的值
+     */
+    private boolean animatingColor;
+    private int animatedColor;
+    private int[] animatedColors;
+
+    ColorfulCanvasRenderer() {
+        fillPaint.setStyle(Paint.Style.FILL);
+        strokePaint.setStyle(Paint.Style.STROKE);
+    }
+
+
+    /**
+     * 更新样式，绘制对象在下次draw时按需重建
+     */
+    void setStyle(ColorfulStyle style) {
+        if (style.equals(this.style)) {
+            return;
+        }
+        this.style = style;
+        strokePaint.setStrokeWidth(style.getStrokeWidth());
+        strokePaint.setColor(style.getStrokeColor());
+        if (style.getDashWidth() > 0) {
+            strokePaint.setPathEffect(new DashPathEffect(new float[]{style.getDashWidth(), style.getDashGap()}, 0));
+        } else {
+            strokePaint.setPathEffect(null);
+        }
+        geometryDirty = true;
+        shaderDirty = true;
+    }
+
+
+    /**
+     * 颜色动画的一帧
+     */
+    void setAnimatedColor(int color) {
+        animatingColor = true;
+        animatedColor = color;
+    }
+
+
+    /**
+     * 渐变动画的一帧，colors由动画复用，只保留引用
+     */
+    void setAnimatedColors(int[] colors) {
+        animatedColors = colors;
+    }
+
+
+    /**
+     * 动画结束，恢复使用样式中的颜色
+     *
+     * @param gradient 是否为渐变动画
+     */
+    void clearAnimated(boolean gradient) {
+        if (gradient) {
+            animatedColors = null;
+            shaderDirty = true;
+        } else {
+            animatingColor = false;
+        }
+    }
+
+
+    /**
+     * 绘制背景
+     *
+     * @param drawableState 当前view状态
+     */
+    void draw(Canvas canvas, int width, int height, int[] drawableState) {
+        if (style == null || width <= 0 || height <= 0) {
+            return;
+        }
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            geometryDirty = true;
+            shaderDirty = true;
+        }
+        if (geometryDirty) {
+            buildGeometry();
+            geometryDirty = false;
+        }
+
+        int slot = style.stateTable().slotOf(ColorfulStateTable.maskOf(drawableState));
+        boolean custom = slot >= ColorfulStateDrawable.SLOT_CUSTOM;
+        boolean useGradient = style.hasGradient() && !custom
+                && (slot == ColorfulStateDrawable.SLOT_NORMAL || style.isLockPressColor());
+        if (useGradient) {
+            if (animatedColors != null) {
+                //Shader的颜色不可修改，动画中只能按当前颜色新建，不放入缓存
+                fillPaint.setShader(GradientShaderCache.create(style.getGradient(), style.getGradientOrientation(),
+                        animatedColors, style.getGradientRadius(), rect));
+            } else {
+                if (shaderDirty) {
+                    shader = buildShader();
+                    shaderDirty = false;
+                }
+                fillPaint.setShader(shader);
+            }
+            fillPaint.setColor(0xFF000000);
+        } else {
+            fillPaint.setShader(null);
+            fillPaint.setColor(custom ? style.stateColor(slot)
+                    : slot == ColorfulStateDrawable.SLOT_PRESSED ? style.getPressColor()
+                    : slot == ColorfulStateDrawable.SLOT_FOCUSED ? style.getFocusColor()
+                    : animatingColor ? animatedColor : style.getColor());
+        }
+
+        boolean hasStroke = style.getStrokeWidth() > 0;
+        if (style.getShape() == ColorfulButton.LINE) {
+            if (hasStroke) {
+                float y = rect.centerY();
+                canvas.drawLine(rect.left, y, rect.right, y, strokePaint);
+            }
+            return;
+        }
+        canvas.drawPath(path, fillPaint);
+        if (hasStroke) {
+            canvas.drawPath(path, strokePaint);
+        }
+    }
+
+
+    /**
+     * 计算形状路径，与GradientDrawable一致，边框宽度的一半向内收缩
+     */
+    private void buildGeometry() {
+        float inset = style.getStrokeWidth() * 0.5F;
+        rect.set(inset, inset, width - inset, height - inset);
+        path.reset();
+        switch (style.getShape()) {
+            case ColorfulButton.OVAL:
+                path.addOval(rect, Path.Direction.CW);
+                break;
+            case ColorfulButton.RING:
+                float thickness = width / RING_THICKNESS_RATIO;
+                float innerRadius = width / RING_INNER_RADIUS_RATIO;
+                path.addCircle(rect.centerX(), rect.centerY(), innerRadius + thickness, Path.Direction.CW);
+                path.addCircle(rect.centerX(), rect.centerY(), innerRadius, Path.Direction.CW);
+                break;
+            case ColorfulButton.LINE:
+                break;
+            default:
+                //cornerRadius优先级高于cornerArray
+                float[] cornerArray = style.cornerArray();
+                if (style.getCornerRadius() <= 0 && cornerArray != null && cornerArray.length >= 8) {
+                    System.arraycopy(cornerArray, 0, radii, 0, 8);
+                } else {
+                    Arrays.fill(radii, style.getCornerRadius());
+                }
+                path.addRoundRect(rect, radii, Path.Direction.CW);
+                break;
+        }
+        path.setFillType(style.getShape() == ColorfulButton.RING ? Path.FillType.EVEN_ODD : Path.FillType.WINDING);
+    }
+
+
+    /**
+     * 从全局缓存获取shader，相同尺寸和渐变的button共用同一个shader
+     */
+    private Shader buildShader() {
+        return GradientShaderCache.obtain(style.getGradient(), style.getGradientOrientation(),
+                style.resolveGradientColors(), style.getGradientRadius(), rect);
+    }
+
+}
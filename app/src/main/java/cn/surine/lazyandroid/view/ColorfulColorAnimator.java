@@ -0,0 +1,184 @@
+package cn.surine.lazyandroid;
+
+import android.os.Build;
+import android.view.Choreographer;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Intro：ColorfulButton的颜色过渡动画
+ * 由Choreographer驱动，每帧按ARGB通道插值，结果写入复用的数组，
+ * 再由button直接写入已mutate的drawable或绘制器的画笔，不经过update()重建，每帧不产生对象
+ * 动画中再次start会从当前显示的颜色开始过渡到新的目标
+ *
+ * @author sunliwei
+ * @date 2020/4/27 10:30
+ */
+@RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+final class ColorfulColorAnimator implements Choreographer.FrameCallback {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final ColorfulButton button;
+
+    /**
+     * true 渐变色动画，false 纯色动画
+     */
+    private final boolean gradient;
+
+    /**
+     * 起始色，目标色，当前色，颜色数量变化时才重新创建
+     */
+    private int[] from = new int[1];
+    private int[] to = new int[1];
+    private int[] current = new int[1];
+
+    private long startNanos;
+    private long durationNanos;
+    private boolean running;
+
+    ColorfulColorAnimator(ColorfulButton button, boolean gradient) {
+        this.button = button;
+        this.gradient = gradient;
+    }
+
+
+    /**
+     * 开始纯色过渡
+     *
+     * @param fromColor  当前颜色，动画中调用时忽略，从当前显示的颜色开始
+     * @param toColor    目标颜色
+     * @param durationMs 时长
+     */
+    void start(int fromColor, int toColor, long durationMs) {
+        int start = running ? current[0] : fromColor;
+        from[0] = start;
+        to[0] = toColor;
+        current[0] = start;
+        begin(durationMs);
+    }
+
+
+    /**
+     * 开始渐变色过渡
+     *
+     * @param fromColors 当前渐变色，动画中且数量不变时忽略，从当前显示的颜色开始
+     * @param toColors   目标渐变色，长度需与fromColors一致
+     * @param durationMs 时长
+     */
+    void start(int[] fromColors, int[] toColors, long durationMs) {
+        int count = toColors.length;
+        boolean retarget = running && current.length == count;
+        if (current.length != count) {
+            from = new int[count];
+            to = new int[count];
+            current = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            from[i] = retarget ? current[i] : fromColors[i];
+            to[i] = toColors[i];
+            current[i] = from[i];
+        }
+        begin(durationMs);
+    }
+
+
+    private void begin(long durationMs) {
+        durationNanos = Math.max(0, durationMs) * NANOS_PER_MILLI;
+        //以下一帧的时间为起点，避免首帧跳变
+        startNanos = -1;
+        if (!running) {
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        if (startNanos < 0) {
+            startNanos = frameTimeNanos;
+        }
+        float fraction = durationNanos == 0 ? 1F : Math.min(1F, (frameTimeNanos - startNanos) / (float) durationNanos);
+        //先加速后减速
+        float eased = fraction * fraction * (3F - 2F * fraction);
+        for (int i = 0; i < current.length; i++) {
+            current[i] = blend(from[i], to[i], eased);
+        }
+        if (fraction >= 1F) {
+            running = false;
+            button.onColorAnimationEnd(this);
+        } else {
+            button.onColorAnimationFrame(this);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+
+    /**
+     * 停止动画，停在当前显示的颜色
+     *
+     * @return 是否正在运行
+     */
+    boolean cancel() {
+        if (!running) {
+            return false;
+        }
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        return true;
+    }
+
+
+    /**
+     * 直接跳到目标颜色并结束
+     */
+    void end() {
+        if (cancel()) {
+            System.arraycopy(to, 0, current, 0, current.length);
+            button.onColorAnimationEnd(this);
+        }
+    }
+
+
+    boolean isRunning() {
+        return running;
+    }
+
+
+    boolean isGradient() {
+        return gradient;
+    }
+
+
+    /**
+     * 当前纯色
+     */
+    int currentColor() {
+        return current[0];
+    }
+
+
+    /**
+     * 当前渐变色，每帧复用，调用方不能修改或长期持有
+     */
+    int[] currentColors() {
+        return current;
+    }
+
+
+    /**
+     * 按ARGB各通道线性插值，与ArgbEvaluator一致但不装箱
+     */
+    static int blend(int from, int to, float fraction) {
+        int a = (from >>> 24) + (int) (((to >>> 24) - (from >>> 24)) * fraction);
+        int r = ((from >> 16) & 0xFF) + (int) ((((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * fraction);
+        int g = ((from >> 8) & 0xFF) + (int) ((((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * fraction);
+        int b = (from & 0xFF) + (int) (((to & 0xFF) - (from & 0xFF)) * fraction);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+}
@@ -0,0 +1,136 @@
+package cn.surine.lazyandroid;
+
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Intro：ColorfulButton背景的全局缓存
+ * 以ColorfulStyle为key保存背景的ConstantState，相同样式的button通过newDrawable共享状态，
+ * 超出容量时按LRU淘汰
+ *
+ * @author sunliwei
+ * @date 2020/4/8 10:40
+ */
+public final class ColorfulDrawableCache {
+
+    /**
+     * 默认缓存的样式数
+     */
+    private static final int DEFAULT_MAX_SIZE = 64;
+
+    private static LruCache<ColorfulStyle, Drawable.ConstantState> cache = new LruCache<>(DEFAULT_MAX_SIZE);
+
+    private static int hitCount;
+    private static int missCount;
+
+    private ColorfulDrawableCache() {
+    }
+
+
+    /**
+     * 获取样式对应的背景状态
+     *
+     * @param style 样式
+     * @return 未缓存时返回null
+     */
+    static synchronized Drawable.ConstantState get(ColorfulStyle style) {
+        Drawable.ConstantState state = cache.get(style);
+        if (state == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return state;
+    }
+
+
+    /**
+     * 获取样式对应的背景状态，不计入命中统计
+     */
+    static synchronized Drawable.ConstantState peek(ColorfulStyle style) {
+        return cache.get(style);
+    }
+
+
+    /**
+     * 缓存样式对应的背景状态
+     */
+    static synchronized void put(ColorfulStyle style, Drawable.ConstantState state) {
+        cache.put(style, state);
+    }
+
+
+    /**
+     * 在后台线程提前构建样式的背景，适合在Application启动时调用
+     * 之后无论在主线程还是AsyncLayoutInflater中创建的button，都直接从构建好的背景创建
+     * 只提前构建普通状态，按压/聚焦状态和水波纹仍在第一次用到时构建
+     *
+     * @param executor 后台线程
+     * @param styles   需要提前构建的样式
+     */
+    public static void prewarm(Executor executor, Collection<ColorfulStyle> styles) {
+        final List<ColorfulStyle> pending = new ArrayList<>(styles);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (ColorfulStyle style : pending) {
+                    if (peek(style) != null) {
+                        continue;
+                    }
+                    ColorfulStateDrawable.State state = new ColorfulStateDrawable.State(new ColorfulDrawableFactory(style));
+                    state.prewarm(ColorfulStateDrawable.SLOT_NORMAL);
+                    put(style, state);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * 修改缓存容量，会清空已有缓存
+     *
+     * @param maxSize 最多缓存的样式数
+     */
+    public static synchronized void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        cache = new LruCache<>(maxSize);
+    }
+
+
+    /**
+     * 清空缓存及统计
+     */
+    public static synchronized void clear() {
+        cache.evictAll();
+        hitCount = 0;
+        missCount = 0;
+    }
+
+
+    public static synchronized int size() {
+        return cache.size();
+    }
+
+
+    public static synchronized int getHitCount() {
+        return hitCount;
+    }
+
+
+    public static synchronized int getMissCount() {
+        return missCount;
+    }
+
+
+    public static synchronized int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+}
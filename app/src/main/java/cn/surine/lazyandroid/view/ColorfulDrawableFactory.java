@@ -0,0 +1,239 @@
+package cn.surine.lazyandroid;
+
+import android.content.res.ColorStateList;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.RippleDrawable;
+import android.graphics.drawable.ShapeDrawable;
+import android.graphics.drawable.shapes.RoundRectShape;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import static android.graphics.drawable.GradientDrawable.Orientation.BL_TR;
+import static android.graphics.drawable.GradientDrawable.Orientation.BOTTOM_TOP;
+import static android.graphics.drawable.GradientDrawable.Orientation.BR_TL;
+import static android.graphics.drawable.GradientDrawable.Orientation.LEFT_RIGHT;
+import static android.graphics.drawable.GradientDrawable.Orientation.RIGHT_LEFT;
+import static android.graphics.drawable.GradientDrawable.Orientation.TL_BR;
+import static android.graphics.drawable.GradientDrawable.Orientation.TOP_BOTTOM;
+import static android.graphics.drawable.GradientDrawable.Orientation.TR_BL;
+
+/**
+ * Intro：按ColorfulStyle构建ColorfulButton背景的各层drawable
+ * 只依赖不可变的样式，不持有view，可以放入全局缓存共享
+ *
+ * @author sunliwei
+ * @date 2020/4/15 16:10
+ */
+final class ColorfulDrawableFactory implements ColorfulStateDrawable.Factory {
+
+    private final ColorfulStyle style;
+
+    ColorfulDrawableFactory(ColorfulStyle style) {
+        this.style = style;
+    }
+
+
+    @Override
+    public Drawable create(int slot) {
+        switch (slot) {
+            case ColorfulStateDrawable.SLOT_PRESSED:
+                return copy(style.getPressColor(), style.isLockPressColor());
+            case ColorfulStateDrawable.SLOT_FOCUSED:
+                return copy(style.getFocusColor(), style.isLockPressColor());
+            case ColorfulStateDrawable.SLOT_RIPPLE:
+                //水波纹仅支持api>=21
+                return Build.VERSION.SDK_INT >= 21 ? initRipple() : null;
+            case ColorfulStateDrawable.SLOT_NORMAL:
+                return copy(style.getColor(), true);
+            default:
+                //自定义状态使用纯色
+                return copy(style.stateColor(slot), false);
+        }
+    }
+
+
+    @Override
+    public ColorfulStateTable getStateTable() {
+        return style.stateTable();
+    }
+
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void update(Drawable drawable, int slot, int dirty) {
+        if (slot == ColorfulStateDrawable.SLOT_RIPPLE) {
+            RippleDrawable ripple = (RippleDrawable) drawable;
+            if ((dirty & ColorfulButton.DIRTY_RIPPLE) != 0) {
+                ripple.setColor(rippleColorList());
+            }
+            if ((dirty & ColorfulButton.DIRTY_CORNER) != 0) {
+                ((ShapeDrawable) ripple.findDrawableByLayerId(android.R.id.mask)).setShape(maskShape());
+            }
+            return;
+        }
+        GradientDrawable gradientDrawable = (GradientDrawable) drawable;
+        if ((dirty & ColorfulButton.DIRTY_FILL) != 0) {
+            if (slot == ColorfulStateDrawable.SLOT_NORMAL) {
+                applyFill(gradientDrawable, style.getColor(), true);
+            } else if (slot >= ColorfulStateDrawable.SLOT_CUSTOM) {
+                applyFill(gradientDrawable, style.stateColor(slot), false);
+            } else {
+                int fillColor = slot == ColorfulStateDrawable.SLOT_PRESSED ? style.getPressColor() : style.getFocusColor();
+                applyFill(gradientDrawable, fillColor, style.isLockPressColor());
+            }
+        }
+        if ((dirty & ColorfulButton.DIRTY_STROKE) != 0) {
+            applyStroke(gradientDrawable);
+        }
+        if ((dirty & ColorfulButton.DIRTY_CORNER) != 0) {
+            applyCorner(gradientDrawable);
+        }
+    }
+
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    private RippleDrawable initRipple() {
+        //控制水波纹边界，view不一定按轮廓裁剪
+        ShapeDrawable maskDrawable = new ShapeDrawable();
+        maskDrawable.setShape(maskShape());
+        return new RippleDrawable(rippleColorList(), null, maskDrawable);
+    }
+
+
+    /**
+     * 水波纹边界形状，cornerRadius大于0时覆盖cornerArray
+     */
+    private RoundRectShape maskShape() {
+        float[] cornerArray = style.cornerArray();
+        if (style.getCornerRadius() <= 0 && cornerArray != null && cornerArray.length >= 8) {
+            return new RoundRectShape(cornerArray.clone(), null, null);
+        }
+        float cornerRadius = style.getCornerRadius();
+        float[] outRadius = new float[]{cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius, cornerRadius};
+        return new RoundRectShape(outRadius, null, null);
+    }
+
+
+    /**
+     * 水波纹颜色
+     * 添加默认状态颜色为水波纹颜色，避免点击闪烁
+     */
+    private ColorStateList rippleColorList() {
+        int[][] stateList = new int[][]{
+                new int[]{android.R.attr.state_pressed},
+                new int[]{}
+        };
+
+        int[] stateColorList = new int[]{
+                style.getRippleColor(),
+                style.getRippleColor()
+        };
+        return new ColorStateList(stateList, stateColorList);
+    }
+
+
+    /**
+     * 解决对象引用copy引起的问题
+     *
+     * @param copyColor 涉及到的color
+     * @param isLock    是否锁定按压颜色
+     */
+    private GradientDrawable copy(int copyColor, boolean isLock) {
+
+        GradientDrawable drawable;
+        if (isLock && style.hasGradient()) {
+            drawable = new GradientDrawable(map(), style.resolveGradientColors());
+        } else {
+            drawable = new GradientDrawable();
+            drawable.setColor(copyColor);
+        }
+
+        drawable.setShape(style.getShape());
+        applyCorner(drawable);
+        applyStroke(drawable);
+        drawable.setGradientType(style.getGradient());
+        drawable.setGradientRadius(style.getGradientRadius());
+
+        return drawable;
+    }
+
+
+    /**
+     * 修改填充色，锁定且设置了渐变时使用渐变，否则使用纯色
+     *
+     * @param fillColor 涉及到的color
+     * @param isLock    是否锁定按压颜色
+     */
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    private void applyFill(GradientDrawable drawable, int fillColor, boolean isLock) {
+        if (isLock && style.hasGradient()) {
+            drawable.setOrientation(map());
+            drawable.setColors(style.resolveGradientColors());
+        } else {
+            drawable.setColor(fillColor);
+        }
+        drawable.setGradientRadius(style.getGradientRadius());
+    }
+
+
+    /**
+     * 修改边框
+     */
+    private void applyStroke(GradientDrawable drawable) {
+        drawable.setStroke((int) style.getStrokeWidth(), style.getStrokeColor(), style.getDashWidth(), style.getDashGap());
+    }
+
+
+    /**
+     * 修改圆角，cornerRadius大于0时覆盖cornerArray
+     */
+    private void applyCorner(GradientDrawable drawable) {
+        float[] cornerArray = style.cornerArray();
+        if (style.getCornerRadius() <= 0 && cornerArray != null) {
+            drawable.setCornerRadii(cornerArray.clone());
+        } else {
+            drawable.setCornerRadius(style.getCornerRadius());
+        }
+    }
+
+
+    /**
+     * 渐变方位映射表
+     */
+    private GradientDrawable.Orientation map() {
+        GradientDrawable.Orientation orientation = null;
+        switch (style.getGradientOrientation()) {
+            case 0:
+                orientation = TOP_BOTTOM;
+                break;
+            case 1:
+                orientation = TR_BL;
+                break;
+            case 2:
+                orientation = RIGHT_LEFT;
+                break;
+            case 3:
+                orientation = BR_TL;
+                break;
+            case 4:
+                orientation = BOTTOM_TOP;
+                break;
+            case 5:
+                orientation = BL_TR;
+                break;
+            case 6:
+                orientation = LEFT_RIGHT;
+                break;
+            case 7:
+                orientation = TL_BR;
+                break;
+            default:
+                orientation = LEFT_RIGHT;
+                break;
+        }
+        return orientation;
+    }
+
+}
@@ -0,0 +1,259 @@
+package cn.surine.lazyandroid;
+
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.view.ViewGroup;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Intro：ColorfulButton测量结果的全局缓存，需通过{@link ColorfulButton#setMeasureCacheEnabled}逐个开启
+ * 以文字，字号，字体，行数，尺寸限制，行距，省略方式，对齐及测量规格等影响测量的字段为key，列表中复用的button绑定相同文字时直接使用缓存的尺寸，
+ * 查找使用复用的key，命中时不产生对象，超出容量时按LRU淘汰
+ * 只在主线程使用
+ *
+ * @author sunliwei
+ * @date 2020/4/30 10:15
+ */
+public final class ColorfulMeasureCache {
+
+    /**
+     * 默认缓存的测量结果数
+     */
+    private static final int DEFAULT_MAX_SIZE = 128;
+
+    private static LruCache<Key, Long> cache = new LruCache<>(DEFAULT_MAX_SIZE);
+
+    /**
+     * 查找用的key，只引用button当前的文字，不复制
+     */
+    private static final Key LOOKUP = new Key();
+
+    private static int hitCount;
+    private static int missCount;
+
+    private ColorfulMeasureCache() {
+    }
+
+
+    /**
+     * 获取测量结果
+     *
+     * @return 高32位为measuredWidthAndState，低32位为measuredHeightAndState，未缓存时返回null
+     */
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    static Long get(ColorfulButton button, int widthMeasureSpec, int heightMeasureSpec) {
+        LOOKUP.set(button, button.getText(), widthMeasureSpec, heightMeasureSpec);
+        Long result = cache.get(LOOKUP);
+        //不持有button的文字
+        LOOKUP.text = null;
+        if (result == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return result;
+    }
+
+
+    /**
+     * 缓存测量结果，key中保存文字的副本
+     */
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    static void put(ColorfulButton button, int widthMeasureSpec, int heightMeasureSpec,
+                    int measuredWidthAndState, int measuredHeightAndState) {
+        Key key = new Key();
+        key.set(button, button.getText().toString(), widthMeasureSpec, heightMeasureSpec);
+        cache.put(key, ((long) measuredWidthAndState << 32) | (measuredHeightAndState & 0xFFFFFFFFL));
+    }
+
+
+    /**
+     * 设置缓存容量，会清空已有缓存
+     */
+    public static void setMaxSize(int maxSize) {
+        cache = new LruCache<>(maxSize);
+    }
+
+
+    public static void clear() {
+        cache.evictAll();
+    }
+
+
+    public static int size() {
+        return cache.size();
+    }
+
+
+    public static int getHitCount() {
+        return hitCount;
+    }
+
+
+    public static int getMissCount() {
+        return missCount;
+    }
+
+
+    /**
+     * 影响TextView测量结果的字段，读取的属性需要api>=16，更低的版本不使用缓存
+     */
+    private static final class Key {
+        private CharSequence text;
+        private float textSize;
+        private Typeface typeface;
+        private float textScaleX;
+        private float letterSpacing;
+        private int paintFlags;
+        private int minLines;
+        private int maxLines;
+        private int minWidth;
+        private int maxWidth;
+        private int minHeight;
+        private int maxHeight;
+        private float lineSpacingExtra;
+        private float lineSpacingMultiplier;
+        private boolean includeFontPadding;
+        private boolean horizontallyScrolling;
+        private TextUtils.TruncateAt ellipsize;
+        private int gravity;
+        private int breakStrategy;
+        private int hyphenationFrequency;
+        private Class<?> transformation;
+        private int paddingLeft;
+        private int paddingTop;
+        private int paddingRight;
+        private int paddingBottom;
+        private int layoutWidth;
+        private int layoutHeight;
+        private int widthMeasureSpec;
+        private int heightMeasureSpec;
+        private int hash;
+
+        @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+        void set(ColorfulButton button, CharSequence text, int widthMeasureSpec, int heightMeasureSpec) {
+            this.text = text;
+            textSize = button.getTextSize();
+            typeface = button.getTypeface();
+            textScaleX = button.getTextScaleX();
+            letterSpacing = Build.VERSION.SDK_INT >= 21 ? button.getLetterSpacing() : 0;
+            paintFlags = button.getPaintFlags();
+            minLines = button.getMinLines();
+            maxLines = button.getMaxLines();
+            //按像素和按行数设置时，另一种方式的getter返回-1
+            minWidth = button.getMinWidth();
+            maxWidth = button.getMaxWidth();
+            minHeight = button.getMinHeight();
+            maxHeight = button.getMaxHeight();
+            lineSpacingExtra = button.getLineSpacingExtra();
+            lineSpacingMultiplier = button.getLineSpacingMultiplier();
+            includeFontPadding = button.getIncludeFontPadding();
+            //singleLine通过setHorizontallyScrolling生效
+            horizontallyScrolling = button.isHorizontallyScrolling();
+            ellipsize = button.getEllipsize();
+            gravity = button.getGravity();
+            breakStrategy = Build.VERSION.SDK_INT >= 23 ? button.getBreakStrategy() : 0;
+            hyphenationFrequency = Build.VERSION.SDK_INT >= 23 ? button.getHyphenationFrequency() : 0;
+            //不同的TransformationMethod转换结果不同，按类型区分
+            transformation = button.getTransformationMethod() == null ? null : button.getTransformationMethod().getClass();
+            //包含padding及上下左右的drawable
+            paddingLeft = button.getCompoundPaddingLeft();
+            paddingTop = button.getCompoundPaddingTop();
+            paddingRight = button.getCompoundPaddingRight();
+            paddingBottom = button.getCompoundPaddingBottom();
+            ViewGroup.LayoutParams params = button.getLayoutParams();
+            layoutWidth = params == null ? 0 : params.width;
+            layoutHeight = params == null ? 0 : params.height;
+            this.widthMeasureSpec = widthMeasureSpec;
+            this.heightMeasureSpec = heightMeasureSpec;
+            hash = computeHash();
+        }
+
+        private int computeHash() {
+            //按内容计算，与String.hashCode一致，不产生对象
+            int result = 0;
+            for (int i = 0, length = text.length(); i < length; i++) {
+                result = 31 * result + text.charAt(i);
+            }
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface == null ? 0 : typeface.hashCode());
+            result = 31 * result + Float.floatToIntBits(textScaleX);
+            result = 31 * result + Float.floatToIntBits(letterSpacing);
+            result = 31 * result + paintFlags;
+            result = 31 * result + minLines;
+            result = 31 * result + maxLines;
+            result = 31 * result + minWidth;
+            result = 31 * result + maxWidth;
+            result = 31 * result + minHeight;
+            result = 31 * result + maxHeight;
+            result = 31 * result + Float.floatToIntBits(lineSpacingExtra);
+            result = 31 * result + Float.floatToIntBits(lineSpacingMultiplier);
+            result = 31 * result + (includeFontPadding ? 1 : 0);
+            result = 31 * result + (horizontallyScrolling ? 1 : 0);
+            result = 31 * result + (ellipsize == null ? 0 : ellipsize.ordinal() + 1);
+            result = 31 * result + gravity;
+            result = 31 * result + breakStrategy;
+            result = 31 * result + hyphenationFrequency;
+            result = 31 * result + (transformation == null ? 0 : transformation.hashCode());
+            result = 31 * result + paddingLeft;
+            result = 31 * result + paddingTop;
+            result = 31 * result + paddingRight;
+            result = 31 * result + paddingBottom;
+            result = 31 * result + layoutWidth;
+            result = 31 * result + layoutHeight;
+            result = 31 * result + widthMeasureSpec;
+            result = 31 * result + heightMeasureSpec;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return hash == that.hash
+                    && Float.compare(textSize, that.textSize) == 0
+                    && Float.compare(textScaleX, that.textScaleX) == 0
+                    && Float.compare(letterSpacing, that.letterSpacing) == 0
+                    && paintFlags == that.paintFlags
+                    && minLines == that.minLines
+                    && maxLines == that.maxLines
+                    && minWidth == that.minWidth
+                    && maxWidth == that.maxWidth
+                    && minHeight == that.minHeight
+                    && maxHeight == that.maxHeight
+                    && Float.compare(lineSpacingExtra, that.lineSpacingExtra) == 0
+                    && Float.compare(lineSpacingMultiplier, that.lineSpacingMultiplier) == 0
+                    && includeFontPadding == that.includeFontPadding
+                    && horizontallyScrolling == that.horizontallyScrolling
+                    && ellipsize == that.ellipsize
+                    && gravity == that.gravity
+                    && breakStrategy == that.breakStrategy
+                    && hyphenationFrequency == that.hyphenationFrequency
+                    && transformation == that.transformation
+                    && paddingLeft == that.paddingLeft
+                    && paddingTop == that.paddingTop
+                    && paddingRight == that.paddingRight
+                    && paddingBottom == that.paddingBottom
+                    && layoutWidth == that.layoutWidth
+                    && layoutHeight == that.layoutHeight
+                    && widthMeasureSpec == that.widthMeasureSpec
+                    && heightMeasureSpec == that.heightMeasureSpec
+                    && (typeface == null ? that.typeface == null : typeface.equals(that.typeface))
+                    && TextUtils.equals(text, that.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
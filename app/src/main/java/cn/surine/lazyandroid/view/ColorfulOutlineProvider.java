@@ -0,0 +1,123 @@
+package cn.surine.lazyandroid;
+
+import android.graphics.Color;
+import android.graphics.Outline;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewOutlineProvider;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.Arrays;
+
+/**
+ * Intro：按ColorfulButton的形状和圆角提供轮廓
+ * 设置elevation后按轮廓产生阴影，只在形状相关的字段变化时才需要重新计算
+ * 只有矩形（统一圆角）和椭圆的轮廓可以用来裁剪，见{@link #canClip()}
+ *
+ * @author sunliwei
+ * @date 2020/4/20 10:25
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+class ColorfulOutlineProvider extends ViewOutlineProvider {
+
+    /**
+     * GradientDrawable中RING的默认内半径比例和厚度比例
+     */
+    private static final float RING_INNER_RADIUS_RATIO = 3F;
+    private static final float RING_THICKNESS_RATIO = 9F;
+
+    private int shape = -1;
+    private float cornerRadius;
+    private float[] cornerArray;
+    private float alpha;
+
+    /**
+     * 是否可以按轮廓裁剪
+     * LINE的轮廓为空，RING的轮廓只是外圈的近似，非统一圆角的凸路径在api<33不能裁剪，
+     * 这些形状裁剪后会丢失内容
+     */
+    boolean canClip() {
+        if (shape == ColorfulButton.OVAL) {
+            return true;
+        }
+        return shape == ColorfulButton.RECTANGLE && !usesConvexPath();
+    }
+
+
+    /**
+     * 非统一圆角时的轮廓路径，按尺寸缓存
+     */
+    private Path convexPath;
+    private int pathWidth;
+    private int pathHeight;
+
+
+    /**
+     * 更新样式
+     *
+     * @return 轮廓是否变化，变化时需要调用View#invalidateOutline
+     */
+    boolean setStyle(ColorfulStyle style) {
+        float newAlpha = style.hasGradient() ? 1F : Color.alpha(style.getColor()) / 255F;
+        boolean changed = shape != style.getShape()
+                || Float.compare(cornerRadius, style.getCornerRadius()) != 0
+                || !Arrays.equals(cornerArray, style.cornerArray())
+                || Float.compare(alpha, newAlpha) != 0;
+        if (changed) {
+            shape = style.getShape();
+            cornerRadius = style.getCornerRadius();
+            cornerArray = style.cornerArray();
+            alpha = newAlpha;
+            convexPath = null;
+        }
+        return changed;
+    }
+
+
+    @Override
+    public void getOutline(View view, Outline outline) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        switch (shape) {
+            case ColorfulButton.OVAL:
+                outline.setOval(0, 0, width, height);
+                break;
+            case ColorfulButton.RING:
+                int radius = (int) (width / RING_INNER_RADIUS_RATIO + width / RING_THICKNESS_RATIO);
+                int cx = width / 2;
+                int cy = height / 2;
+                outline.setOval(cx - radius, cy - radius, cx + radius, cy + radius);
+                break;
+            case ColorfulButton.LINE:
+                outline.setEmpty();
+                break;
+            default:
+                if (!usesConvexPath()) {
+                    outline.setRoundRect(0, 0, width, height, cornerRadius);
+                } else {
+                    if (convexPath == null || pathWidth != width || pathHeight != height) {
+                        convexPath = new Path();
+                        convexPath.addRoundRect(new RectF(0, 0, width, height), cornerArray, Path.Direction.CW);
+                        pathWidth = width;
+                        pathHeight = height;
+                    }
+                    //非统一圆角只用于阴影，不裁剪
+                    outline.setConvexPath(convexPath);
+                }
+                break;
+        }
+        outline.setAlpha(alpha);
+    }
+
+
+    /**
+     * cornerRadius优先级高于cornerArray，与GradientDrawable一致
+     */
+    private boolean usesConvexPath() {
+        return cornerRadius <= 0 && cornerArray != null && cornerArray.length >= 8;
+    }
+
+}
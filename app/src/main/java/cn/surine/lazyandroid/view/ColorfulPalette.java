@@ -0,0 +1,109 @@
+package cn.surine.lazyandroid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Intro：颜色调色板
+ * 颜色以token区分，token在全局注册为int，解析颜色只是一次数组下标访问
+ * 日间，夜间，品牌等主题各用一个调色板，通过ColorfulPaletteManager切换
+ * <p>
+ * 如：
+ * public static final int PRIMARY = ColorfulPalette.token("primary");
+ * ColorfulPalette day = new ColorfulPalette.Builder().put(PRIMARY, 0xFF008577).build();
+ *
+ * @author sunliwei
+ * @date 2020/4/22 14:40
+ */
+public final class ColorfulPalette {
+
+    private static final Map<String, Integer> TOKENS = new HashMap<>();
+
+    /**
+     * 下标为token，未定义的token对应defined为false
+     */
+    private final int[] colors;
+    private final boolean[] defined;
+
+    private ColorfulPalette(Builder builder) {
+        colors = Arrays.copyOf(builder.colors, builder.colors.length);
+        defined = Arrays.copyOf(builder.defined, builder.defined.length);
+    }
+
+
+    /**
+     * 注册或获取token，相同名字返回相同的值
+     *
+     * @param name token名
+     */
+    public static synchronized int token(String name) {
+        Integer token = TOKENS.get(name);
+        if (token == null) {
+            token = TOKENS.size();
+            TOKENS.put(name, token);
+        }
+        return token;
+    }
+
+
+    /**
+     * 解析token对应的颜色
+     *
+     * @param fallback 调色板中未定义该token时返回的颜色
+     */
+    public int resolve(int token, int fallback) {
+        if (token < 0 || token >= colors.length || !defined[token]) {
+            return fallback;
+        }
+        return colors[token];
+    }
+
+
+    public boolean contains(int token) {
+        return token >= 0 && token < colors.length && defined[token];
+    }
+
+
+    /**
+     * 调色板构建器
+     */
+    public static class Builder {
+        private int[] colors = new int[8];
+        private boolean[] defined = new boolean[8];
+
+        public Builder() {
+        }
+
+        /**
+         * 以已有调色板为基础，只覆盖部分颜色
+         */
+        public Builder(ColorfulPalette base) {
+            colors = Arrays.copyOf(base.colors, Math.max(base.colors.length, 8));
+            defined = Arrays.copyOf(base.defined, colors.length);
+        }
+
+        public Builder put(int token, int color) {
+            if (token < 0) {
+                throw new IllegalArgumentException("token must be registered by ColorfulPalette.token()");
+            }
+            if (token >= colors.length) {
+                int size = Math.max(token + 1, colors.length * 2);
+                colors = Arrays.copyOf(colors, size);
+                defined = Arrays.copyOf(defined, size);
+            }
+            colors[token] = color;
+            defined[token] = true;
+            return this;
+        }
+
+        public Builder put(String token, int color) {
+            return put(token(token), color);
+        }
+
+        public ColorfulPalette build() {
+            return new ColorfulPalette(this);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package cn.surine.lazyandroid;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Intro：全局调色板管理
+ * 切换调色板时一次遍历所有已attach且绑定了token的ColorfulButton，
+ * 只有解析后颜色确实变化的button才会刷新，且每个button只刷新一次，
+ * 所有刷新都在同一帧中绘制；未attach的button在attach时再按当前调色板刷新
+ * 只能在主线程调用
+ *
+ * @author sunliwei
+ * @date 2020/4/22 15:20
+ */
+public final class ColorfulPaletteManager {
+
+    private static ColorfulPalette palette;
+
+    /**
+     * 调色板版本，每次切换加一，button据此判断是否需要重新解析
+     */
+    private static int version;
+
+    private static final Set<ColorfulButton> BOUND_BUTTONS = new HashSet<>();
+
+    /**
+     * 最近一次切换时实际刷新和跳过的button数
+     */
+    private static int lastRestyledCount;
+    private static int lastSkippedCount;
+
+    private ColorfulPaletteManager() {
+    }
+
+
+    /**
+     * 切换调色板
+     *
+     * @param newPalette 新的调色板
+     */
+    public static void setPalette(ColorfulPalette newPalette) {
+        palette = newPalette;
+        version++;
+        int restyled = 0;
+        int skipped = 0;
+        for (ColorfulButton button : BOUND_BUTTONS) {
+            if (button.applyPalette(newPalette, version)) {
+                restyled++;
+            } else {
+                skipped++;
+            }
+        }
+        lastRestyledCount = restyled;
+        lastSkippedCount = skipped;
+    }
+
+
+    public static ColorfulPalette getPalette() {
+        return palette;
+    }
+
+
+    static int getVersion() {
+        return version;
+    }
+
+
+    static void register(ColorfulButton button) {
+        BOUND_BUTTONS.add(button);
+    }
+
+
+    static void unregister(ColorfulButton button) {
+        BOUND_BUTTONS.remove(button);
+    }
+
+
+    public static int getLastRestyledCount() {
+        return lastRestyledCount;
+    }
+
+
+    public static int getLastSkippedCount() {
+        return lastSkippedCount;
+    }
+
+}
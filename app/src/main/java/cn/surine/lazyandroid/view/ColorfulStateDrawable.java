@@ -0,0 +1,377 @@
+package cn.surine.lazyandroid;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Intro：按需构建各状态的背景drawable
+ * 通过ColorfulStateTable查表选择当前层，没有自定义状态时与原先的selector一致：聚焦优先，其次按压，否则普通
+ * 各状态的drawable在第一次进入该状态时才构建，水波纹在第一次按压时才构建，
+ * 大部分从未被点击的button只会构建普通状态的drawable
+ *
+ * @author sunliwei
+ * @date 2020/4/15 15:30
+ */
+class ColorfulStateDrawable extends Drawable implements Drawable.Callback {
+
+    /**
+     * 各层的下标，水波纹层叠加在状态层之上，自定义状态层从SLOT_CUSTOM开始
+     */
+    static final int SLOT_NORMAL = 0;
+    static final int SLOT_PRESSED = 1;
+    static final int SLOT_FOCUSED = 2;
+    static final int SLOT_RIPPLE = 3;
+    static final int SLOT_CUSTOM = 4;
+
+    /**
+     * 各层drawable的构建器
+     */
+    interface Factory {
+
+        /**
+         * 构建某一层，不支持时返回null（如api<21的水波纹）
+         */
+        @Nullable
+        Drawable create(int slot);
+
+        /**
+         * 在已构建的drawable上应用修改
+         *
+         * @param dirty ColorfulButton的脏标记
+         */
+        void update(Drawable drawable, int slot, int dirty);
+
+        /**
+         * 状态表，决定层数及各状态对应的层
+         */
+        ColorfulStateTable getStateTable();
+    }
+
+    private State state;
+    private final Drawable[] layers;
+    private int currentSlot = SLOT_NORMAL;
+    private boolean mutated;
+
+    private int alpha = 0xFF;
+    private ColorFilter colorFilter;
+    private float hotspotX;
+    private float hotspotY;
+    private boolean hasHotspot;
+
+    ColorfulStateDrawable(Factory factory) {
+        this(new State(factory));
+    }
+
+    private ColorfulStateDrawable(State state) {
+        this.state = state;
+        this.layers = new Drawable[state.layerStates.length];
+    }
+
+
+    /**
+     * 更换构建器并在已构建的层上应用修改，未构建的层之后按新构建器构建
+     * 新构建器的状态表层数必须与原来一致，层数变化时需要重建
+     */
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    void update(Factory factory, int dirty) {
+        if (factory.getStateTable().getSlotCount() != layers.length) {
+            throw new IllegalArgumentException("state table changed, rebuild the drawable instead");
+        }
+        state.factory = factory;
+        state.table = factory.getStateTable();
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i] != null) {
+                factory.update(layers[i], i, dirty);
+            }
+        }
+    }
+
+
+    /**
+     * 颜色动画的一帧，直接修改普通状态层的填充色，调用前需已mutate
+     */
+    void applyFillColor(int color) {
+        Drawable normal = obtainLayer(SLOT_NORMAL);
+        if (normal instanceof GradientDrawable) {
+            ((GradientDrawable) normal).setColor(color);
+        }
+    }
+
+
+    /**
+     * 渐变动画的一帧，直接修改渐变色，锁定按压颜色时已构建的按压和聚焦层一起修改，调用前需已mutate
+     * GradientDrawable直接引用colors，调用方修改数组内容后需再次调用
+     */
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    void applyGradientColors(int[] colors, boolean lockPressColor) {
+        Drawable normal = obtainLayer(SLOT_NORMAL);
+        if (normal instanceof GradientDrawable) {
+            ((GradientDrawable) normal).setColors(colors);
+        }
+        if (!lockPressColor) {
+            return;
+        }
+        for (int i = SLOT_PRESSED; i <= SLOT_FOCUSED; i++) {
+            if (layers[i] instanceof GradientDrawable) {
+                ((GradientDrawable) layers[i]).setColors(colors);
+            }
+        }
+    }
+
+
+    /**
+     * 获取某一层，未构建时构建
+     * 共享状态中已有其他实例构建过的层时，直接从其ConstantState创建
+     */
+    @Nullable
+    private Drawable obtainLayer(int slot) {
+        Drawable layer = layers[slot];
+        if (layer != null) {
+            return layer;
+        }
+        ConstantState layerState = state.layerStates[slot];
+        if (layerState != null) {
+            layer = layerState.newDrawable();
+        } else {
+            layer = state.factory.create(slot);
+            if (layer == null) {
+                return null;
+            }
+            state.layerStates[slot] = layer.getConstantState();
+        }
+        if (mutated) {
+            layer = layer.mutate();
+        }
+        layer.setCallback(this);
+        layer.setBounds(getBounds());
+        layer.setAlpha(alpha);
+        layer.setColorFilter(colorFilter);
+        layer.setVisible(isVisible(), false);
+        layer.setState(getState());
+        if (slot == SLOT_RIPPLE && hasHotspot && Build.VERSION.SDK_INT >= 21) {
+            layer.setHotspot(hotspotX, hotspotY);
+        }
+        layers[slot] = layer;
+        return layer;
+    }
+
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Drawable current = obtainLayer(currentSlot);
+        if (current != null) {
+            current.draw(canvas);
+        }
+        if (layers[SLOT_RIPPLE] != null) {
+            layers[SLOT_RIPPLE].draw(canvas);
+        }
+    }
+
+
+    @Override
+    public boolean isStateful() {
+        return true;
+    }
+
+
+    @Override
+    protected boolean onStateChange(int[] stateSet) {
+        boolean changed = false;
+        int mask = ColorfulStateTable.maskOf(stateSet);
+        int slot = state.table.slotOf(mask);
+        if (slot != currentSlot) {
+            currentSlot = slot;
+            changed = true;
+        }
+        Drawable current = obtainLayer(currentSlot);
+        if (current != null) {
+            changed |= current.setState(stateSet);
+        }
+        if (layers[SLOT_RIPPLE] == null && (mask & ColorfulButton.STATE_PRESSED) != 0) {
+            //第一次按压时才构建水波纹，构建时已同步当前状态
+            changed |= obtainLayer(SLOT_RIPPLE) != null;
+        } else if (layers[SLOT_RIPPLE] != null) {
+            changed |= layers[SLOT_RIPPLE].setState(stateSet);
+        }
+        return changed;
+    }
+
+
+    @Override
+    public void jumpToCurrentState() {
+        for (Drawable layer : layers) {
+            if (layer != null) {
+                layer.jumpToCurrentState();
+            }
+        }
+    }
+
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        for (Drawable layer : layers) {
+            if (layer != null) {
+                layer.setBounds(bounds);
+            }
+        }
+    }
+
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        for (Drawable layer : layers) {
+            if (layer != null) {
+                layer.setVisible(visible, restart);
+            }
+        }
+        return changed;
+    }
+
+
+    @Override
+    public void setAlpha(int alpha) {
+        this.alpha = alpha;
+        for (Drawable layer : layers) {
+            if (layer != null) {
+                layer.setAlpha(alpha);
+            }
+        }
+    }
+
+
+    @Override
+    public int getAlpha() {
+        return alpha;
+    }
+
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        this.colorFilter = colorFilter;
+        for (Drawable layer : layers) {
+            if (layer != null) {
+                layer.setColorFilter(colorFilter);
+            }
+        }
+    }
+
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void setHotspot(float x, float y) {
+        hotspotX = x;
+        hotspotY = y;
+        hasHotspot = true;
+        if (layers[SLOT_RIPPLE] != null) {
+            layers[SLOT_RIPPLE].setHotspot(x, y);
+        }
+    }
+
+
+    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void setHotspotBounds(int left, int top, int right, int bottom) {
+        if (layers[SLOT_RIPPLE] != null) {
+            layers[SLOT_RIPPLE].setHotspotBounds(left, top, right, bottom);
+        }
+    }
+
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+        invalidateSelf();
+    }
+
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        unscheduleSelf(what);
+    }
+
+
+    @NonNull
+    @Override
+    public Drawable mutate() {
+        if (!mutated && super.mutate() == this) {
+            state = new State(state.factory);
+            for (int i = 0; i < layers.length; i++) {
+                if (layers[i] != null) {
+                    layers[i] = layers[i].mutate();
+                    state.layerStates[i] = layers[i].getConstantState();
+                }
+            }
+            mutated = true;
+        }
+        return this;
+    }
+
+
+    @Nullable
+    @Override
+    public ConstantState getConstantState() {
+        return state;
+    }
+
+
+    /**
+     * 共享状态，保存构建器及已构建层的ConstantState
+     * 同一个State创建的实例之间，任意一个实例构建过的层其他实例可直接复用
+     */
+    static final class State extends ConstantState {
+        private Factory factory;
+        private ColorfulStateTable table;
+        private final ConstantState[] layerStates;
+
+        State(Factory factory) {
+            this.factory = factory;
+            this.table = factory.getStateTable();
+            this.layerStates = new ConstantState[table.getSlotCount()];
+        }
+
+        /**
+         * 提前构建某一层，可以在后台线程调用，须在State被其他线程使用之前完成
+         */
+        void prewarm(int slot) {
+            if (layerStates[slot] == null) {
+                Drawable layer = factory.create(slot);
+                if (layer != null) {
+                    layerStates[slot] = layer.getConstantState();
+                }
+            }
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new ColorfulStateDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package cn.surine.lazyandroid;
+
+/**
+ * Intro：ColorfulButton的状态表
+ * 把view的状态数组压缩成int掩码，再通过预先计算好的查找表得到对应的层，
+ * 不需要像StateListDrawable一样逐条匹配
+ * <p>
+ * 匹配顺序：自定义状态（按添加顺序）> 聚焦 > 按压 > 普通
+ *
+ * @author sunliwei
+ * @date 2020/4/26 11:05
+ */
+final class ColorfulStateTable {
+
+    /**
+     * 参与匹配的状态位数，见ColorfulButton.STATE_*
+     */
+    private static final int MASK_BITS = 6;
+
+    /**
+     * 自定义状态的最大数量
+     */
+    static final int MAX_CUSTOM_STATES = 32;
+
+    /**
+     * 只有聚焦，按压，普通三种状态的默认表
+     */
+    static final ColorfulStateTable DEFAULT = new ColorfulStateTable(null);
+
+    /**
+     * 下标为状态掩码，值为层下标
+     */
+    private final byte[] slots = new byte[1 << MASK_BITS];
+    private final int slotCount;
+
+    /**
+     * @param customMasks 自定义状态掩码，按优先级排列，对应的层从SLOT_CUSTOM开始
+     */
+    ColorfulStateTable(int[] customMasks) {
+        int customCount = customMasks == null ? 0 : customMasks.length;
+        if (customCount > MAX_CUSTOM_STATES) {
+            throw new IllegalArgumentException("too many custom states, max " + MAX_CUSTOM_STATES);
+        }
+        slotCount = ColorfulStateDrawable.SLOT_CUSTOM + customCount;
+        for (int mask = 0; mask < slots.length; mask++) {
+            int slot = ColorfulStateDrawable.SLOT_NORMAL;
+            boolean matched = false;
+            for (int i = 0; i < customCount; i++) {
+                if ((mask & customMasks[i]) == customMasks[i]) {
+                    slot = ColorfulStateDrawable.SLOT_CUSTOM + i;
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                //与原先selector一致：聚焦优先，其次按压
+                if ((mask & ColorfulButton.STATE_FOCUSED) != 0) {
+                    slot = ColorfulStateDrawable.SLOT_FOCUSED;
+                } else if ((mask & ColorfulButton.STATE_PRESSED) != 0) {
+                    slot = ColorfulStateDrawable.SLOT_PRESSED;
+                }
+            }
+            slots[mask] = (byte) slot;
+        }
+    }
+
+
+    /**
+     * 检查自定义状态掩码是否合法
+     */
+    static void checkMask(int mask) {
+        if (mask <= 0 || mask >= (1 << MASK_BITS)) {
+            throw new IllegalArgumentException("state mask must be a combination of ColorfulButton.STATE_*");
+        }
+    }
+
+
+    /**
+     * 将view的状态数组压缩为掩码
+     */
+    static int maskOf(int[] stateSet) {
+        int mask = 0;
+        boolean enabled = false;
+        for (int state : stateSet) {
+            if (state == android.R.attr.state_pressed) {
+                mask |= ColorfulButton.STATE_PRESSED;
+            } else if (state == android.R.attr.state_focused) {
+                mask |= ColorfulButton.STATE_FOCUSED;
+            } else if (state == android.R.attr.state_checked) {
+                mask |= ColorfulButton.STATE_CHECKED;
+            } else if (state == android.R.attr.state_selected) {
+                mask |= ColorfulButton.STATE_SELECTED;
+            } else if (state == android.R.attr.state_activated) {
+                mask |= ColorfulButton.STATE_ACTIVATED;
+            } else if (state == android.R.attr.state_enabled) {
+                enabled = true;
+            }
+        }
+        return enabled ? mask : mask | ColorfulButton.STATE_DISABLED;
+    }
+
+
+    int slotOf(int mask) {
+        return slots[mask];
+    }
+
+
+    int getSlotCount() {
+        return slotCount;
+    }
+
+}
@@ -0,0 +1,436 @@
+package cn.surine.lazyandroid;
+
+import java.util.Arrays;
+
+/**
+ * Intro：ColorfulButton的不可变样式描述
+ * 包含决定背景外观的全部字段，可作为缓存key，相同样式的button可以共享背景
+ *
+ * @author sunliwei
+ * @date 2020/4/8 10:12
+ */
+public final class ColorfulStyle {
+
+    private final int shape;
+    private final int color;
+    private final int pressColor;
+    private final int focusColor;
+    private final int rippleColor;
+    private final float cornerRadius;
+    private final float[] cornerArray;
+    private final float strokeWidth;
+    private final int strokeColor;
+    private final float dashGap;
+    private final float dashWidth;
+    private final int gradient;
+    private final int startColor;
+    private final int centerColor;
+    private final int endColor;
+    private final float gradientRadius;
+    private final int gradientOrientation;
+    private final int[] gradientColors;
+    private final boolean lockPressColor;
+    private final int[] stateMasks;
+    private final int[] stateColors;
+
+    /**
+     * 状态表，首次使用时计算
+     */
+    private ColorfulStateTable stateTable;
+
+    /**
+     * 缓存的hash值，样式对象常被用作缓存key
+     */
+    private final int hash;
+
+    private ColorfulStyle(Builder builder) {
+        shape = builder.shape;
+        color = builder.color;
+        pressColor = builder.pressColor;
+        focusColor = builder.focusColor;
+        rippleColor = builder.rippleColor;
+        cornerRadius = builder.cornerRadius;
+        cornerArray = builder.cornerArray == null ? null : builder.cornerArray.clone();
+        strokeWidth = builder.strokeWidth;
+        strokeColor = builder.strokeColor;
+        dashGap = builder.dashGap;
+        dashWidth = builder.dashWidth;
+        gradient = builder.gradient;
+        startColor = builder.startColor;
+        centerColor = builder.centerColor;
+        endColor = builder.endColor;
+        gradientRadius = builder.gradientRadius;
+        gradientOrientation = builder.gradientOrientation;
+        gradientColors = builder.gradientColors == null ? null : builder.gradientColors.clone();
+        lockPressColor = builder.lockPressColor;
+        stateMasks = builder.stateMasks == null ? null : builder.stateMasks.clone();
+        stateColors = builder.stateColors == null ? null : builder.stateColors.clone();
+        hash = computeHash();
+    }
+
+
+    private int computeHash() {
+        int result = shape;
+        result = 31 * result + color;
+        result = 31 * result + pressColor;
+        result = 31 * result + focusColor;
+        result = 31 * result + rippleColor;
+        result = 31 * result + Float.floatToIntBits(cornerRadius);
+        result = 31 * result + Arrays.hashCode(cornerArray);
+        result = 31 * result + Float.floatToIntBits(strokeWidth);
+        result = 31 * result + strokeColor;
+        result = 31 * result + Float.floatToIntBits(dashGap);
+        result = 31 * result + Float.floatToIntBits(dashWidth);
+        result = 31 * result + gradient;
+        result = 31 * result + startColor;
+        result = 31 * result + centerColor;
+        result = 31 * result + endColor;
+        result = 31 * result + Float.floatToIntBits(gradientRadius);
+        result = 31 * result + gradientOrientation;
+        result = 31 * result + Arrays.hashCode(gradientColors);
+        result = 31 * result + (lockPressColor ? 1 : 0);
+        result = 31 * result + Arrays.hashCode(stateMasks);
+        result = 31 * result + Arrays.hashCode(stateColors);
+        return result;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ColorfulStyle)) {
+            return false;
+        }
+        ColorfulStyle that = (ColorfulStyle) o;
+        return hash == that.hash
+                && shape == that.shape
+                && color == that.color
+                && pressColor == that.pressColor
+                && focusColor == that.focusColor
+                && rippleColor == that.rippleColor
+                && Float.compare(cornerRadius, that.cornerRadius) == 0
+                && Float.compare(strokeWidth, that.strokeWidth) == 0
+                && strokeColor == that.strokeColor
+                && Float.compare(dashGap, that.dashGap) == 0
+                && Float.compare(dashWidth, that.dashWidth) == 0
+                && gradient == that.gradient
+                && startColor == that.startColor
+                && centerColor == that.centerColor
+                && endColor == that.endColor
+                && Float.compare(gradientRadius, that.gradientRadius) == 0
+                && gradientOrientation == that.gradientOrientation
+                && lockPressColor == that.lockPressColor
+                && Arrays.equals(cornerArray, that.cornerArray)
+                && Arrays.equals(gradientColors, that.gradientColors)
+                && Arrays.equals(stateMasks, that.stateMasks)
+                && Arrays.equals(stateColors, that.stateColors);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+
+    public int getShape() {
+        return shape;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public int getPressColor() {
+        return pressColor;
+    }
+
+    public int getFocusColor() {
+        return focusColor;
+    }
+
+    public int getRippleColor() {
+        return rippleColor;
+    }
+
+    public float getCornerRadius() {
+        return cornerRadius;
+    }
+
+    /**
+     * 返回副本，样式本身不可变
+     */
+    public float[] getCornerArray() {
+        return cornerArray == null ? null : cornerArray.clone();
+    }
+
+    public float getStrokeWidth() {
+        return strokeWidth;
+    }
+
+    public int getStrokeColor() {
+        return strokeColor;
+    }
+
+    public float getDashGap() {
+        return dashGap;
+    }
+
+    public float getDashWidth() {
+        return dashWidth;
+    }
+
+    public int getGradient() {
+        return gradient;
+    }
+
+    public int getStartColor() {
+        return startColor;
+    }
+
+    public int getCenterColor() {
+        return centerColor;
+    }
+
+    public int getEndColor() {
+        return endColor;
+    }
+
+    public float getGradientRadius() {
+        return gradientRadius;
+    }
+
+    public int getGradientOrientation() {
+        return gradientOrientation;
+    }
+
+    /**
+     * 返回副本，样式本身不可变
+     */
+    public int[] getGradientColors() {
+        return gradientColors == null ? null : gradientColors.clone();
+    }
+
+    public boolean isLockPressColor() {
+        return lockPressColor;
+    }
+
+    /**
+     * 返回副本，样式本身不可变
+     */
+    public int[] getStateMasks() {
+        return stateMasks == null ? null : stateMasks.clone();
+    }
+
+    /**
+     * 返回副本，样式本身不可变
+     */
+    public int[] getStateColors() {
+        return stateColors == null ? null : stateColors.clone();
+    }
+
+
+    /**
+     * 是否设置了渐变色
+     */
+    boolean hasGradient() {
+        return !(startColor == ColorfulButton.DEFAULT_COLOR && centerColor == ColorfulButton.DEFAULT_COLOR
+                && endColor == ColorfulButton.DEFAULT_COLOR) || gradientColors != null;
+    }
+
+
+    /**
+     * 实际使用的渐变色数组，gradientColors优先，调用方不能修改返回值
+     */
+    int[] resolveGradientColors() {
+        return gradientColors == null ? new int[]{startColor, centerColor, endColor} : gradientColors;
+    }
+
+
+    /**
+     * 圆角数组，调用方不能修改返回值
+     */
+    float[] cornerArray() {
+        return cornerArray;
+    }
+
+
+    /**
+     * 状态表，没有自定义状态时使用默认表
+     * 多线程下可能重复计算，结果相同，无需同步
+     */
+    ColorfulStateTable stateTable() {
+        ColorfulStateTable table = stateTable;
+        if (table == null) {
+            table = stateMasks == null ? ColorfulStateTable.DEFAULT : new ColorfulStateTable(stateMasks);
+            stateTable = table;
+        }
+        return table;
+    }
+
+
+    /**
+     * 自定义状态层的颜色
+     *
+     * @param slot 层下标，从ColorfulStateDrawable.SLOT_CUSTOM开始
+     */
+    int stateColor(int slot) {
+        return stateColors[slot - ColorfulStateDrawable.SLOT_CUSTOM];
+    }
+
+
+    /**
+     * 样式构建器，默认值与ColorfulButton一致
+     */
+    public static class Builder {
+        private int shape = ColorfulButton.RECTANGLE;
+        private int color = ColorfulButton.DEFAULT_COLOR;
+        private int pressColor = ColorfulButton.DEFAULT_COLOR;
+        private int focusColor = ColorfulButton.DEFAULT_COLOR;
+        private int rippleColor = ColorfulButton.DEFAULT_RIPPLE_COLOR;
+        private float cornerRadius = 8;
+        private float[] cornerArray;
+        private float strokeWidth;
+        private int strokeColor = ColorfulButton.DEFAULT_COLOR;
+        private float dashGap;
+        private float dashWidth;
+        private int gradient = ColorfulButton.LINEAR;
+        private int startColor = ColorfulButton.DEFAULT_COLOR;
+        private int centerColor = ColorfulButton.DEFAULT_COLOR;
+        private int endColor = ColorfulButton.DEFAULT_COLOR;
+        private float gradientRadius = 8;
+        private int gradientOrientation = ColorfulButton.LEFT_RIGHT_INT;
+        private int[] gradientColors;
+        private boolean lockPressColor = true;
+        private int[] stateMasks;
+        private int[] stateColors;
+
+        public Builder setShape(int shape) {
+            this.shape = shape;
+            return this;
+        }
+
+        public Builder setColor(int color) {
+            this.color = color;
+            return this;
+        }
+
+        public Builder setPressColor(int pressColor) {
+            this.pressColor = pressColor;
+            return this;
+        }
+
+        public Builder setFocusColor(int focusColor) {
+            this.focusColor = focusColor;
+            return this;
+        }
+
+        public Builder setRippleColor(int rippleColor) {
+            this.rippleColor = rippleColor;
+            return this;
+        }
+
+        public Builder setCornerRadius(float cornerRadius) {
+            this.cornerRadius = cornerRadius;
+            return this;
+        }
+
+        public Builder setCornerArray(float[] cornerArray) {
+            this.cornerArray = cornerArray;
+            return this;
+        }
+
+        public Builder setStrokeWidth(float strokeWidth) {
+            this.strokeWidth = strokeWidth;
+            return this;
+        }
+
+        public Builder setStrokeColor(int strokeColor) {
+            this.strokeColor = strokeColor;
+            return this;
+        }
+
+        public Builder setDashGap(float dashGap) {
+            this.dashGap = dashGap;
+            return this;
+        }
+
+        public Builder setDashWidth(float dashWidth) {
+            this.dashWidth = dashWidth;
+            return this;
+        }
+
+        public Builder setGradient(int gradient) {
+            this.gradient = gradient;
+            return this;
+        }
+
+        public Builder setStartColor(int startColor) {
+            this.startColor = startColor;
+            return this;
+        }
+
+        public Builder setCenterColor(int centerColor) {
+            this.centerColor = centerColor;
+            return this;
+        }
+
+        public Builder setEndColor(int endColor) {
+            this.endColor = endColor;
+            return this;
+        }
+
+        public Builder setGradientRadius(float gradientRadius) {
+            this.gradientRadius = gradientRadius;
+            return this;
+        }
+
+        public Builder setGradientOrientation(int gradientOrientation) {
+            this.gradientOrientation = gradientOrientation;
+            return this;
+        }
+
+        public Builder setGradientColors(int[] gradientColors) {
+            this.gradientColors = gradientColors;
+            return this;
+        }
+
+        public Builder setLockPressColor(boolean lockPressColor) {
+            this.lockPressColor = lockPressColor;
+            return this;
+        }
+
+        /**
+         * 自定义状态颜色，按数组顺序匹配，优先于聚焦和按压
+         *
+         * @param stateMasks  状态掩码，ColorfulButton.STATE_*的组合
+         * @param stateColors 对应的颜色
+         */
+        public Builder setStateColors(int[] stateMasks, int[] stateColors) {
+            if (stateMasks == null || stateMasks.length == 0) {
+                this.stateMasks = null;
+                this.stateColors = null;
+                return this;
+            }
+            if (stateColors == null || stateColors.length != stateMasks.length) {
+                throw new IllegalArgumentException("stateColors must match stateMasks");
+            }
+            if (stateMasks.length > ColorfulStateTable.MAX_CUSTOM_STATES) {
+                throw new IllegalArgumentException("too many custom states, max " + ColorfulStateTable.MAX_CUSTOM_STATES);
+            }
+            for (int mask : stateMasks) {
+                ColorfulStateTable.checkMask(mask);
+            }
+            this.stateMasks = stateMasks;
+            this.stateColors = stateColors;
+            return this;
+        }
+
+        public ColorfulStyle build() {
+            return new ColorfulStyle(this);
+        }
+    }
+
+}
@@ -1,27 +1,53 @@
 package cn.surine.lazyandroid.view;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.RectF;
+import android.os.Build;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Intro：
  * 一个简易的对比进度条
+ * 左右两侧的圆角矩形和斜切部分各合并为一条Path，只在进度，高度，圆角或尺寸变化后重新计算，绘制一帧不产生对象
+ * 设置多段比例后切换为多段模式，相同颜色的段合并到同一条Path中
  *
  * @author sunliwei
  * @date 2020/3/25 14:23
  */
 public class ContrastBar extends View {
     private static final int NORMAL_HEIGHT = 40;
+
+    /**
+     * 标签模式：不显示，百分比，计数
+     */
+    public static final int LABEL_NONE = 0;
+    public static final int LABEL_PERCENT = 1;
+    public static final int LABEL_COUNT = 2;
+
+    /**
+     * 标签文字高度最多占进度条高度的比例
+     */
+    private static final float LABEL_HEIGHT_RATIO = 0.7F;
+
+    /**
+     * 历史曲线最多保留的采样数
+     */
+    public static final int MAX_HISTORY_CAPACITY = 4096;
     private Paint mainPaint;
     private Paint backPaint;
     float progress = 0F;
@@ -29,6 +55,90 @@ public class ContrastBar extends View {
     private int viewWidth;
     private int radius = 10;
 
+    /**
+     * 左右两侧的标签，只在形状重新计算时更新，绘制时直接使用
+     */
+    private int labelMode = LABEL_NONE;
+    private Paint labelPaint;
+    private int labelColor = Color.WHITE;
+    private float labelTextSize;
+    private long leftCount;
+    private long rightCount;
+    private LabelCache labelCache;
+    private String leftLabel;
+    private String rightLabel;
+    private float leftLabelX;
+    private float rightLabelX;
+    private float labelY;
+
+    /**
+     * 历史进度环形缓冲区，historyStart为最早的采样，historySampleCount为累计采样数
+     */
+    private float[] history;
+    private int historyStart;
+    private int historySize;
+    private long historySampleCount;
+
+    /**
+     * 历史曲线，新采样直接追加到末尾，绘制时平移隐藏已移出的部分，
+     * 点数达到容量的两倍时才按缓冲区重建，均摊每个采样O(1)
+     */
+    private Path sparkPath;
+    private Paint sparkPaint;
+    private long sparkFirstSample;
+    private int sparkPointCount;
+    private int sparkWidth = -1;
+    private int sparkHeight = -1;
+
+    /**
+     * 左右两侧的形状，复用同一对象
+     */
+    private final Path leftPath = new Path();
+    private final Path rightPath = new Path();
+    private final RectF barRect = new RectF();
+    private boolean geometryDirty = true;
+
+    /**
+     * 多段模式：各段权重，颜色，累计比例（长度为段数+1），为null时为左右对比模式
+     */
+    private float[] segmentWeights;
+    private int[] segmentColors;
+    private float[] segmentOffsets;
+
+    /**
+     * 多段模式下每种颜色一条Path，数量只增不减
+     */
+    private Path[] segmentPaths = new Path[0];
+    private int[] segmentPathColors = new int[0];
+    private int segmentPathCount;
+    private Paint segmentPaint;
+
+    /**
+     * 后台线程提交的最新进度（float的int位），只保留最新值
+     */
+    private final AtomicInteger pendingProgressBits = new AtomicInteger();
+
+    /**
+     * 是否已安排刷新，保证每帧最多post一次
+     */
+    private final AtomicBoolean progressPending = new AtomicBoolean();
+
+    /**
+     * 收到的和被合并掉（未单独绘制）的更新数
+     */
+    private final AtomicLong receivedUpdateCount = new AtomicLong();
+    private final AtomicLong droppedUpdateCount = new AtomicLong();
+
+    /**
+     * 进度动画，由Choreographer驱动，回调在第一次动画时创建
+     */
+    private Choreographer.FrameCallback progressFrameCallback;
+    private boolean animating;
+    private float animFrom;
+    private float animTo;
+    private long animStartNanos;
+    private long animDurationNanos;
+
     public ContrastBar(Context context) {
         this(context, null);
     }
@@ -47,6 +157,7 @@ public class ContrastBar extends View {
         mainPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         backPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mainPaint.setTextSize(60);
+        labelTextSize = mainPaint.getTextSize();
         mainPaint.setColor(Color.parseColor("#868FFF"));
         backPaint.setColor(Color.parseColor("#DDDDDD"));
     }
@@ -68,36 +179,542 @@ public class ContrastBar extends View {
             height = NORMAL_HEIGHT;
         }
 
-        viewWidth = width;
-        barHeight = height;
+        if (viewWidth != width || barHeight != height) {
+            viewWidth = width;
+            barHeight = height;
+            geometryDirty = true;
+        }
         setMeasuredDimension(width, height);
     }
 
 
     @Override
-    protected void onDraw(Canvas canvas) {
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        geometryDirty = true;
+    }
+
 
-        @SuppressLint("DrawAllocation") RectF leftRect = new RectF(0, 0, (int) (progress * viewWidth) - barHeight / 2, barHeight);
-        canvas.drawRoundRect(leftRect, radius, radius, mainPaint);
-        @SuppressLint("DrawAllocation") Path leftPath = new Path();
-        leftPath.moveTo(leftRect.right - 10, 0);
-        leftPath.lineTo(leftRect.right + barHeight, 0);
-        leftPath.lineTo(leftRect.right, barHeight);
-        leftPath.lineTo(leftRect.right - 10, barHeight);
-        leftPath.close();
-        if (progress > 0 && progress < 1) {
-            canvas.drawPath(leftPath, mainPaint);
-        }
-        @SuppressLint("DrawAllocation") RectF rightRect = new RectF((int) (progress * viewWidth) + barHeight, 0, viewWidth, barHeight);
-        canvas.drawRoundRect(rightRect, radius, radius, backPaint);
-        @SuppressLint("DrawAllocation") Path rightPath = new Path();
-        rightPath.moveTo(rightRect.left + 10, 0);
-        rightPath.lineTo(rightRect.left, 0);
-        rightPath.lineTo(rightRect.left - barHeight, barHeight);
-        rightPath.lineTo(rightRect.left, barHeight);
-        rightPath.lineTo(rightRect.left + 10, barHeight);
-        rightPath.close();
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (progressPending.getAndSet(false)) {
+            //后台线程提交的最新值优先于动画
+            stopProgressAnimation();
+            progress = Float.intBitsToFloat(pendingProgressBits.get());
+            geometryDirty = true;
+            recordHistory(progress);
+        }
+        if (segmentWeights != null) {
+            if (geometryDirty) {
+                buildSegments();
+                geometryDirty = false;
+            }
+            for (int i = 0; i < segmentPathCount; i++) {
+                segmentPaint.setColor(segmentPathColors[i]);
+                canvas.drawPath(segmentPaths[i], segmentPaint);
+            }
+            return;
+        }
+        if (geometryDirty) {
+            buildGeometry();
+            geometryDirty = false;
+        }
+        canvas.drawPath(leftPath, mainPaint);
         canvas.drawPath(rightPath, backPaint);
+        if (leftLabel != null) {
+            canvas.drawText(leftLabel, leftLabelX, labelY, labelPaint);
+        }
+        if (rightLabel != null) {
+            canvas.drawText(rightLabel, rightLabelX, labelY, labelPaint);
+        }
+        if (historySize > 1) {
+            drawHistory(canvas);
+        }
+    }
+
+
+    /**
+     * 在进度条内绘制历史曲线，最新的采样在最右侧
+     */
+    private void drawHistory(Canvas canvas) {
+        if (sparkWidth != viewWidth || sparkHeight != barHeight) {
+            rebuildSparkPath();
+        }
+        float step = sparkStep();
+        long oldestSample = historySampleCount - historySize;
+        canvas.save();
+        canvas.clipRect(0, 0, viewWidth, barHeight);
+        canvas.translate(-(oldestSample - sparkFirstSample) * step, 0);
+        canvas.drawPath(sparkPath, sparkPaint);
+        canvas.restore();
+    }
+
+
+    /**
+     * 记录一个采样并追加到曲线末尾
+     */
+    private void recordHistory(float value) {
+        if (history == null) {
+            return;
+        }
+        int capacity = history.length;
+        if (historySize < capacity) {
+            history[(historyStart + historySize) % capacity] = value;
+            historySize++;
+        } else {
+            history[historyStart] = value;
+            historyStart = (historyStart + 1) % capacity;
+        }
+        historySampleCount++;
+        if (sparkWidth != viewWidth || sparkHeight != barHeight || sparkPointCount >= capacity * 2) {
+            //尺寸变化或点数过多，绘制时重建
+            sparkWidth = -1;
+            return;
+        }
+        appendSparkPoint(historySampleCount - 1, value);
+    }
+
+
+    private void rebuildSparkPath() {
+        sparkPath.rewind();
+        sparkPointCount = 0;
+        sparkWidth = viewWidth;
+        sparkHeight = barHeight;
+        sparkFirstSample = historySampleCount - historySize;
+        int capacity = history.length;
+        for (int i = 0; i < historySize; i++) {
+            appendSparkPoint(sparkFirstSample + i, history[(historyStart + i) % capacity]);
+        }
+    }
+
+
+    private void appendSparkPoint(long sample, float value) {
+        float x = (sample - sparkFirstSample) * sparkStep();
+        float inset = sparkPaint.getStrokeWidth();
+        float y = barHeight - inset - Math.max(0F, Math.min(1F, value)) * (barHeight - inset * 2);
+        if (sparkPointCount == 0) {
+            sparkPath.moveTo(x, y);
+        } else {
+            sparkPath.lineTo(x, y);
+        }
+        sparkPointCount++;
+    }
+
+
+    /**
+     * 相邻采样的水平间距，缓冲区满时铺满整个宽度
+     */
+    private float sparkStep() {
+        return history.length > 1 ? viewWidth / (float) (history.length - 1) : 0;
+    }
+
+
+    /**
+     * 计算左右两侧的形状
+     *
+     * @see ContrastBarGeometry
+     */
+    private void buildGeometry() {
+        leftPath.rewind();
+        rightPath.rewind();
+        int split = ContrastBarGeometry.appendPair(leftPath, rightPath, barRect, 0, 0, viewWidth, barHeight, progress, radius);
+
+        buildLabels(split);
+    }
+
+
+    /**
+     * 计算左右标签的文字和位置，文字和宽度从缓存获取，值不变时不重新测量
+     * 放不下的一侧不显示
+     */
+    private void buildLabels(int split) {
+        leftLabel = null;
+        rightLabel = null;
+        if (labelMode == LABEL_NONE || barHeight <= 0) {
+            return;
+        }
+        float textSize = Math.min(labelTextSize, barHeight * LABEL_HEIGHT_RATIO);
+        if (labelPaint.getTextSize() != textSize) {
+            labelPaint.setTextSize(textSize);
+            labelCache.clear();
+        }
+        long leftValue;
+        long rightValue;
+        if (labelMode == LABEL_PERCENT) {
+            leftValue = Math.round(Math.max(0F, Math.min(1F, progress)) * 100);
+            rightValue = 100 - leftValue;
+        } else {
+            leftValue = leftCount;
+            rightValue = rightCount;
+        }
+        float padding = Math.max(radius, barHeight / 4);
+
+        int slot = labelCache.slotOf(leftValue, labelPaint);
+        if (labelCache.widthAt(slot) + padding * 2 <= split - barHeight / 2) {
+            leftLabel = labelCache.textAt(slot);
+            leftLabelX = padding;
+        }
+        slot = labelCache.slotOf(rightValue, labelPaint);
+        if (labelCache.widthAt(slot) + padding * 2 <= viewWidth - (split + barHeight)) {
+            rightLabel = labelCache.textAt(slot);
+            rightLabelX = viewWidth - padding - labelCache.widthAt(slot);
+        }
+        labelY = (barHeight - labelPaint.ascent() - labelPaint.descent()) / 2F;
+    }
+
+
+    /**
+     * 计算多段模式的形状，规则与左右对比模式一致（ContrastBarGeometry）：
+     * 首尾两段为圆角矩形加斜切，中间的段为平行四边形，相邻段之间留出同样的斜切缝隙
+     */
+    private void buildSegments() {
+        for (int i = 0; i < segmentPathCount; i++) {
+            segmentPaths[i].rewind();
+        }
+        int count = segmentWeights.length;
+        if (segmentOffsets[count] <= 0) {
+            return;
+        }
+        int lastVisible = -1;
+        int firstVisible = -1;
+        for (int i = 0; i < count; i++) {
+            if (segmentWeights[i] > 0) {
+                if (firstVisible < 0) {
+                    firstVisible = i;
+                }
+                lastVisible = i;
+            }
+        }
+        for (int i = firstVisible; i <= lastVisible; i++) {
+            if (segmentWeights[i] <= 0) {
+                continue;
+            }
+            Path path = obtainSegmentPath(segmentColors[i]);
+            int start = (int) (segmentOffsets[i] / segmentOffsets[count] * viewWidth);
+            int end = (int) (segmentOffsets[i + 1] / segmentOffsets[count] * viewWidth);
+            boolean first = i == firstVisible;
+            boolean last = i == lastVisible;
+            if (first && last) {
+                barRect.set(0, 0, viewWidth, barHeight);
+                path.addRoundRect(barRect, radius, radius, Path.Direction.CW);
+            } else if (first) {
+                ContrastBarGeometry.appendStart(path, barRect, 0, 0, end, barHeight, radius, true);
+            } else if (last) {
+                ContrastBarGeometry.appendEnd(path, barRect, 0, 0, start, viewWidth, barHeight, radius);
+            } else {
+                ContrastBarGeometry.appendMiddle(path, 0, 0, start, end, barHeight);
+            }
+        }
+    }
+
+
+    /**
+     * 获取颜色对应的Path，没有时复用空闲的或新建
+     */
+    private Path obtainSegmentPath(int color) {
+        for (int i = 0; i < segmentPathCount; i++) {
+            if (segmentPathColors[i] == color) {
+                return segmentPaths[i];
+            }
+        }
+        if (segmentPathCount == segmentPaths.length) {
+            segmentPaths = Arrays.copyOf(segmentPaths, segmentPathCount + 1);
+            segmentPathColors = Arrays.copyOf(segmentPathColors, segmentPathCount + 1);
+        }
+        if (segmentPaths[segmentPathCount] == null) {
+            segmentPaths[segmentPathCount] = new Path();
+        } else {
+            segmentPaths[segmentPathCount].rewind();
+        }
+        segmentPathColors[segmentPathCount] = color;
+        return segmentPaths[segmentPathCount++];
+    }
+
+
+    /**
+     * 切换为多段模式，如多个选项的投票比例
+     * 权重不需要归一化，权重为0的段不绘制
+     *
+     * @param weights 各段权重，不能为负，总和需大于0
+     * @param colors  各段颜色，长度与weights一致，相同颜色的段共用一条Path
+     */
+    public void setSegments(float[] weights, int[] colors) {
+        if (weights == null || colors == null || weights.length != colors.length || weights.length == 0) {
+            throw new IllegalArgumentException("weights and colors must be non-empty and of the same length");
+        }
+        checkSegmentWeights(weights);
+        if (segmentWeights == null || segmentWeights.length != weights.length) {
+            segmentWeights = new float[weights.length];
+            segmentColors = new int[weights.length];
+            segmentOffsets = new float[weights.length + 1];
+        }
+        System.arraycopy(colors, 0, segmentColors, 0, colors.length);
+        //颜色可能变化，重新分配Path
+        segmentPathCount = 0;
+        if (segmentPaint == null) {
+            segmentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        }
+        setSegmentWeights(weights);
+    }
+
+
+    /**
+     * 只更新多段模式的权重，段数不变，不产生对象，适合频繁刷新
+     *
+     * @param weights 各段权重，长度需与setSegments一致，不能为负，总和需大于0
+     */
+    public void setSegmentWeights(float[] weights) {
+        if (segmentWeights == null) {
+            throw new IllegalStateException("call setSegments first");
+        }
+        if (weights == null || weights.length != segmentWeights.length) {
+            throw new IllegalArgumentException("segment count can't be changed, call setSegments instead");
+        }
+        checkSegmentWeights(weights);
+        float total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            segmentWeights[i] = weights[i];
+            segmentOffsets[i] = total;
+            total += weights[i];
+        }
+        segmentOffsets[weights.length] = total;
+        geometryDirty = true;
+        invalidate();
+    }
+
+
+    /**
+     * 权重需为有限的非负数，且总和大于0，否则计算出的坐标为NaN
+     */
+    private static void checkSegmentWeights(float[] weights) {
+        float total = 0;
+        for (float weight : weights) {
+            if (!(weight >= 0) || Float.isInfinite(weight)) {
+                throw new IllegalArgumentException("segment weight must be finite and non-negative: " + weight);
+            }
+            total += weight;
+        }
+        if (!(total > 0) || Float.isInfinite(total)) {
+            throw new IllegalArgumentException("sum of segment weights must be positive and finite: " + total);
+        }
+    }
+
+
+    /**
+     * 退出多段模式，恢复左右对比
+     */
+    public void clearSegments() {
+        segmentWeights = null;
+        segmentColors = null;
+        segmentOffsets = null;
+        segmentPathCount = 0;
+        geometryDirty = true;
+        invalidate();
+    }
+
+
+    public int getSegmentCount() {
+        return segmentWeights == null ? 0 : segmentWeights.length;
+    }
+
+
+    /**
+     * 设置左右两侧的标签，仅左右对比模式显示
+     *
+     * @param labelMode LABEL_NONE，LABEL_PERCENT 或 LABEL_COUNT
+     */
+    public void setLabelMode(int labelMode) {
+        if (labelMode < LABEL_NONE || labelMode > LABEL_COUNT) {
+            throw new IllegalArgumentException("label mode is not in the range");
+        }
+        if (this.labelMode == labelMode) {
+            return;
+        }
+        this.labelMode = labelMode;
+        if (labelMode != LABEL_NONE) {
+            if (labelPaint == null) {
+                labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                labelPaint.setColor(labelColor);
+                labelCache = new LabelCache();
+            }
+            labelCache.setPercent(labelMode == LABEL_PERCENT);
+        }
+        geometryDirty = true;
+        invalidate();
+    }
+
+
+    public int getLabelMode() {
+        return labelMode;
+    }
+
+
+    /**
+     * 计数模式下左右两侧显示的值，值不变时不会重新测量
+     */
+    public void setLabelCounts(long leftCount, long rightCount) {
+        if (this.leftCount == leftCount && this.rightCount == rightCount) {
+            return;
+        }
+        this.leftCount = leftCount;
+        this.rightCount = rightCount;
+        if (labelMode == LABEL_COUNT) {
+            geometryDirty = true;
+            invalidate();
+        }
+    }
+
+
+    /**
+     * 标签文字大小，实际大小不超过进度条高度的70%
+     */
+    public void setLabelTextSize(float labelTextSize) {
+        this.labelTextSize = labelTextSize;
+        geometryDirty = true;
+        invalidate();
+    }
+
+
+    /**
+     * 标签文字颜色，标签未开启时先保存，通过{@link #setLabelMode}开启后生效
+     */
+    public void setLabelColor(int color) {
+        labelColor = color;
+        if (labelPaint != null) {
+            labelPaint.setColor(color);
+            invalidate();
+        }
+    }
+
+
+    /**
+     * 开启历史曲线，保留最近capacity个进度，在进度条内绘制为一条细线
+     * 进度来自setProgress，postProgress及animateProgress的目标值
+     *
+     * @param capacity 采样数，0为关闭，最大MAX_HISTORY_CAPACITY
+     */
+    public void setHistoryCapacity(int capacity) {
+        if (capacity < 0 || capacity > MAX_HISTORY_CAPACITY) {
+            throw new IllegalArgumentException("history capacity must be in [0, " + MAX_HISTORY_CAPACITY + "]");
+        }
+        if (capacity == 0) {
+            history = null;
+            historyStart = 0;
+            historySize = 0;
+            invalidate();
+            return;
+        }
+        if (history != null && history.length == capacity) {
+            return;
+        }
+        //保留最近的采样
+        float[] newHistory = new float[capacity];
+        int keep = history == null ? 0 : Math.min(historySize, capacity);
+        for (int i = 0; i < keep; i++) {
+            newHistory[i] = history[(historyStart + historySize - keep + i) % history.length];
+        }
+        history = newHistory;
+        historyStart = 0;
+        historySize = keep;
+        if (sparkPath == null) {
+            sparkPath = new Path();
+            sparkPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            sparkPaint.setStyle(Paint.Style.STROKE);
+            sparkPaint.setStrokeWidth(2);
+            sparkPaint.setColor(Color.parseColor("#80FFFFFF"));
+        }
+        sparkWidth = -1;
+        invalidate();
+    }
+
+
+    public int getHistoryCapacity() {
+        return history == null ? 0 : history.length;
+    }
+
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+
+    public void clearHistory() {
+        historyStart = 0;
+        historySize = 0;
+        sparkWidth = -1;
+        invalidate();
+    }
+
+
+    public void setHistoryColor(int color) {
+        if (sparkPaint != null) {
+            sparkPaint.setColor(color);
+            invalidate();
+        }
+    }
+
+
+    /**
+     * 标签缓存的命中和未命中次数
+     */
+    public int getLabelCacheHitCount() {
+        return labelCache == null ? 0 : labelCache.hitCount;
+    }
+
+
+    public int getLabelCacheMissCount() {
+        return labelCache == null ? 0 : labelCache.missCount;
+    }
+
+
+    /**
+     * 标签文字及宽度的缓存
+     * 直接映射，容量固定，命中时不产生对象，未命中时才格式化并测量文字，
+     * 文字的字形排版由系统按字符串缓存，复用同一个String也能命中系统的排版缓存
+     * 文字大小或格式变化时需要清空
+     */
+    private static final class LabelCache {
+        private static final int SIZE_BITS = 5;
+
+        private final long[] values = new long[1 << SIZE_BITS];
+        private final String[] texts = new String[1 << SIZE_BITS];
+        private final float[] widths = new float[1 << SIZE_BITS];
+        private boolean percent;
+        private int hitCount;
+        private int missCount;
+
+        void setPercent(boolean percent) {
+            if (this.percent != percent) {
+                this.percent = percent;
+                clear();
+            }
+        }
+
+        int slotOf(long value, Paint paint) {
+            //乘以黄金分割常数打散相邻的值
+            int slot = (int) ((value * 0x9E3779B97F4A7C15L) >>> (64 - SIZE_BITS));
+            if (texts[slot] != null && values[slot] == value) {
+                hitCount++;
+                return slot;
+            }
+            missCount++;
+            values[slot] = value;
+            texts[slot] = percent ? value + "%" : String.valueOf(value);
+            widths[slot] = paint.measureText(texts[slot]);
+            return slot;
+        }
+
+        String textAt(int slot) {
+            return texts[slot];
+        }
+
+        float widthAt(int slot) {
+            return widths[slot];
+        }
+
+        void clear() {
+            Arrays.fill(texts, null);
+        }
     }
 
 
@@ -105,8 +722,164 @@ public class ContrastBar extends View {
         return progress;
     }
 
+    /**
+     * 可在任意线程以任意频率调用，只保留最新的进度，每帧最多刷新一次
+     * 进度限制在[0,1]，NaN会被丢弃
+     *
+     * @param progress 进度
+     */
+    public void postProgress(float progress) {
+        receivedUpdateCount.incrementAndGet();
+        if (Float.isNaN(progress)) {
+            droppedUpdateCount.incrementAndGet();
+            return;
+        }
+        pendingProgressBits.set(Float.floatToIntBits(Math.max(0F, Math.min(1F, progress))));
+        if (!progressPending.compareAndSet(false, true)) {
+            //本帧已安排刷新，绘制时读取最新值，这次更新被合并
+            droppedUpdateCount.incrementAndGet();
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= 16) {
+            postInvalidateOnAnimation();
+        } else {
+            postInvalidate();
+        }
+    }
+
+
+    /**
+     * 收到的postProgress次数
+     */
+    public long getReceivedUpdateCount() {
+        return receivedUpdateCount.get();
+    }
+
+
+    /**
+     * 被合并或丢弃，没有单独绘制的postProgress次数
+     */
+    public long getDroppedUpdateCount() {
+        return droppedUpdateCount.get();
+    }
+
+
+    /**
+     * 平滑过渡到目标进度，动画中再次调用会从当前位置过渡到新目标
+     * 每帧只刷新分割点附近的区域，api<16时直接设置
+     *
+     * @param target     目标进度，限制在[0,1]
+     * @param durationMs 时长
+     */
+    public void animateProgress(float target, long durationMs) {
+        target = Math.max(0F, Math.min(1F, target));
+        if (Build.VERSION.SDK_INT < 16 || durationMs <= 0) {
+            setProgress(target);
+            return;
+        }
+        recordHistory(target);
+        animFrom = progress;
+        animTo = target;
+        animStartNanos = -1;
+        animDurationNanos = durationMs * 1000000L;
+        if (!animating) {
+            animating = true;
+            Choreographer.getInstance().postFrameCallback(obtainProgressFrameCallback());
+        }
+    }
+
+
+    public boolean isAnimating() {
+        return animating;
+    }
+
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback obtainProgressFrameCallback() {
+        if (progressFrameCallback == null) {
+            progressFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onProgressFrame(frameTimeNanos);
+                }
+            };
+        }
+        return progressFrameCallback;
+    }
+
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    private void onProgressFrame(long frameTimeNanos) {
+        if (!animating) {
+            return;
+        }
+        if (animStartNanos < 0) {
+            animStartNanos = frameTimeNanos;
+        }
+        float fraction = Math.min(1F, (frameTimeNanos - animStartNanos) / (float) animDurationNanos);
+        //减速插值
+        float eased = 1F - (1F - fraction) * (1F - fraction);
+        float oldProgress = progress;
+        progress = animFrom + (animTo - animFrom) * eased;
+        geometryDirty = true;
+        invalidateSplit(oldProgress, progress);
+        if (fraction < 1F) {
+            Choreographer.getInstance().postFrameCallback(progressFrameCallback);
+        } else {
+            animating = false;
+        }
+    }
+
+
+    /**
+     * 只刷新分割点移动经过的竖条区域，左右两侧只在分割点附近变化
+     * 硬件加速下api>=21会忽略该区域，由系统自行计算
+     */
+    @SuppressWarnings("deprecation")
+    private void invalidateSplit(float from, float to) {
+        if (labelMode != LABEL_NONE) {
+            //标签在左右两端，百分比每帧都在变，与分割点的区域合并后基本就是整个view
+            invalidate();
+            return;
+        }
+        int fromX = (int) (from * viewWidth);
+        int toX = (int) (to * viewWidth);
+        //左侧圆角和斜切，右侧斜切都落在分割点前后barHeight+radius以内
+        int margin = barHeight + radius + ContrastBarGeometry.JOINT_OVERLAP;
+        invalidate(Math.min(fromX, toX) - margin, 0, Math.max(fromX, toX) + margin, getHeight());
+    }
+
+
+    private void stopProgressAnimation() {
+        if (animating) {
+            animating = false;
+            Choreographer.getInstance().removeFrameCallback(progressFrameCallback);
+        }
+    }
+
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (animating) {
+            //detach后不再有帧回调，直接跳到目标，目标已记录到历史中
+            stopProgressAnimation();
+            progress = animTo;
+            geometryDirty = true;
+        }
+    }
+
+
+    /**
+     * 只能在主线程调用，后台线程使用postProgress，直接设置会取消进度动画
+     */
     public void setProgress(float progress) {
+        stopProgressAnimation();
+        //直接设置的进度覆盖尚未绘制的postProgress
+        progressPending.set(false);
         this.progress = progress;
+        geometryDirty = true;
+        recordHistory(progress);
         if (progress >= 0 && progress <= 1) {
             invalidate();
         }
@@ -118,6 +891,7 @@ public class ContrastBar extends View {
 
     public void setBarHeight(int barHeight) {
         this.barHeight = barHeight;
+        geometryDirty = true;
         invalidate();
     }
 
@@ -127,6 +901,7 @@ public class ContrastBar extends View {
 
     public void setRadius(int radius) {
         this.radius = radius;
+        geometryDirty = true;
         invalidate();
     }
 
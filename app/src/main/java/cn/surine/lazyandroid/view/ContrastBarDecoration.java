@@ -0,0 +1,132 @@
+package cn.surine.lazyandroid.view;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Intro：在RecyclerView中批量绘制对比进度条
+ * 不需要每行一个ContrastBar，所有可见行的左侧合并为一条Path，右侧合并为一条Path，一次绘制完成，
+ * 共用两个Paint，每行进度从float数组按adapter位置读取，形状规则与ContrastBar一致
+ * <p>
+ * 如：
+ * ContrastBarDecoration decoration = new ContrastBarDecoration(40, 10);
+ * decoration.setProgress(progressArray);
+ * recyclerView.addItemDecoration(decoration);
+ *
+ * @author sunliwei
+ * @date 2020/4/29 16:20
+ */
+public class ContrastBarDecoration extends RecyclerView.ItemDecoration {
+
+    private final Paint mainPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path leftPath = new Path();
+    private final Path rightPath = new Path();
+    /**
+     * 所有行的进度条矩形，分割点靠近两端时斜切会超出进度条，View由自身边界裁剪，这里需要手动裁剪
+     */
+    private final Path clipPath = new Path();
+    private final RectF barRect = new RectF();
+
+    private float[] progress;
+    private int barHeight;
+    private int radius;
+    private int horizontalPadding;
+
+    /**
+     * @param barHeight 进度条高度，在行内垂直居中
+     * @param radius    圆角
+     */
+    public ContrastBarDecoration(int barHeight, int radius) {
+        this.barHeight = barHeight;
+        this.radius = radius;
+        mainPaint.setColor(Color.parseColor("#868FFF"));
+        backPaint.setColor(Color.parseColor("#DDDDDD"));
+    }
+
+
+    @Override
+    public void onDraw(@NonNull Canvas canvas, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        if (progress == null) {
+            return;
+        }
+        leftPath.rewind();
+        rightPath.rewind();
+        clipPath.rewind();
+        for (int i = 0, count = parent.getChildCount(); i < count; i++) {
+            View child = parent.getChildAt(i);
+            int position = parent.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION || position >= progress.length) {
+                continue;
+            }
+            int width = child.getWidth() - horizontalPadding * 2;
+            if (width <= 0) {
+                continue;
+            }
+            float x = child.getLeft() + child.getTranslationX() + horizontalPadding;
+            float y = child.getTop() + child.getTranslationY() + (child.getHeight() - barHeight) / 2;
+            ContrastBarGeometry.appendPair(leftPath, rightPath, barRect, x, y, width, barHeight, progress[position], radius);
+            clipPath.addRect(x, y, x + width, y + barHeight, Path.Direction.CW);
+        }
+        int saveCount = canvas.save();
+        canvas.clipPath(clipPath);
+        canvas.drawPath(leftPath, mainPaint);
+        canvas.drawPath(rightPath, backPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+
+    /**
+     * 设置各行进度，下标为adapter位置，数组只保留引用，修改内容后需调用RecyclerView#invalidate
+     */
+    public void setProgress(float[] progress) {
+        this.progress = progress;
+    }
+
+
+    public float[] getProgress() {
+        return progress;
+    }
+
+
+    public void setBarHeight(int barHeight) {
+        this.barHeight = barHeight;
+    }
+
+
+    public int getBarHeight() {
+        return barHeight;
+    }
+
+
+    public void setRadius(int radius) {
+        this.radius = radius;
+    }
+
+
+    public int getRadius() {
+        return radius;
+    }
+
+
+    /**
+     * 进度条与行左右两边的距离
+     */
+    public void setHorizontalPadding(int horizontalPadding) {
+        this.horizontalPadding = horizontalPadding;
+    }
+
+
+    public void setColors(int mainColor, int backColor) {
+        mainPaint.setColor(mainColor);
+        backPaint.setColor(backColor);
+    }
+
+}
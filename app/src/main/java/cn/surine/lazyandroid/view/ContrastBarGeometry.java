@@ -0,0 +1,108 @@
+package cn.surine.lazyandroid.view;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * Intro：对比进度条的形状规则
+ * ContrastBar和ContrastBarDecoration共用，形状追加到传入的Path中，可以把多个进度条合并到同一条Path
+ * 圆角矩形与斜切部分方向一致（顺时针），按WINDING规则填充即为两者的并集
+ *
+ * @author sunliwei
+ * @date 2020/4/29 15:40
+ */
+final class ContrastBarGeometry {
+
+    /**
+     * 斜切部分与圆角矩形重叠的宽度，避免接缝
+     */
+    static final int JOINT_OVERLAP = 10;
+
+    private ContrastBarGeometry() {
+    }
+
+
+    /**
+     * 追加左右对比的两侧形状
+     *
+     * @param leftPath  左侧形状
+     * @param rightPath 右侧形状
+     * @param rect      复用的临时对象
+     * @param x         进度条左上角
+     * @param y         进度条左上角
+     * @param width     进度条宽度
+     * @param height    进度条高度
+     * @param progress  进度，超出[0,1]时按边界处理
+     * @param radius    圆角
+     * @return 分割点相对x的位置
+     */
+    static int appendPair(Path leftPath, Path rightPath, RectF rect, float x, float y,
+                          int width, int height, float progress, int radius) {
+        int split = progress > 0 ? (int) (Math.min(progress, 1F) * width) : 0;
+        //只剩一侧时是完整的圆角矩形，不追加斜切，否则斜切会画到进度条外
+        if (split <= 0) {
+            rect.set(x, y, x + width, y + height);
+            rightPath.addRoundRect(rect, radius, radius, Path.Direction.CW);
+            return 0;
+        }
+        if (split >= width) {
+            rect.set(x, y, x + width, y + height);
+            leftPath.addRoundRect(rect, radius, radius, Path.Direction.CW);
+            return width;
+        }
+        appendStart(leftPath, rect, x, y, split, height, radius, true);
+        appendEnd(rightPath, rect, x, y, split, width, height, radius);
+        return split;
+    }
+
+
+    /**
+     * 追加第一段：圆角矩形加右侧斜切
+     *
+     * @param split 与下一段的分割点，相对x
+     * @param joint 是否追加斜切
+     */
+    static void appendStart(Path path, RectF rect, float x, float y, int split, int height, int radius, boolean joint) {
+        rect.set(x, y, x + split - height / 2, y + height);
+        path.addRoundRect(rect, radius, radius, Path.Direction.CW);
+        if (joint) {
+            path.moveTo(rect.right - JOINT_OVERLAP, y);
+            path.lineTo(rect.right + height, y);
+            path.lineTo(rect.right, y + height);
+            path.lineTo(rect.right - JOINT_OVERLAP, y + height);
+            path.close();
+        }
+    }
+
+
+    /**
+     * 追加最后一段：左侧斜切加圆角矩形
+     *
+     * @param split 与上一段的分割点，相对x
+     */
+    static void appendEnd(Path path, RectF rect, float x, float y, int split, int width, int height, int radius) {
+        rect.set(x + split + height, y, x + width, y + height);
+        path.addRoundRect(rect, radius, radius, Path.Direction.CW);
+        path.moveTo(rect.left - height, y + height);
+        path.lineTo(rect.left, y);
+        path.lineTo(rect.left + JOINT_OVERLAP, y);
+        path.lineTo(rect.left + JOINT_OVERLAP, y + height);
+        path.close();
+    }
+
+
+    /**
+     * 追加中间段：平行四边形，左边与appendEnd的斜边一致，右边与appendStart的斜边一致
+     *
+     * @param start 与上一段的分割点，相对x
+     * @param end   与下一段的分割点，相对x
+     */
+    static void appendMiddle(Path path, float x, float y, int start, int end, int height) {
+        path.moveTo(x + start + height, y);
+        path.lineTo(x + end + height / 2, y);
+        path.lineTo(x + end - height / 2, y + height);
+        path.lineTo(x + start, y + height);
+        path.close();
+    }
+
+}
@@ -0,0 +1,226 @@
+package cn.surine.lazyandroid;
+
+import android.graphics.LinearGradient;
+import android.graphics.RadialGradient;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.SweepGradient;
+import android.util.LruCache;
+
+import java.util.Arrays;
+
+/**
+ * Intro：渐变shader的全局缓存
+ * 以（渐变类型，方向，颜色，半径，绘制区域）为key缓存LinearGradient/RadialGradient/SweepGradient，
+ * 尺寸和样式相同的button复用同一个shader，超出容量时按LRU淘汰
+ *
+ * @author sunliwei
+ * @date 2020/4/13 11:20
+ */
+public final class GradientShaderCache {
+
+    /**
+     * 默认缓存的shader数
+     */
+    private static final int DEFAULT_MAX_SIZE = 128;
+
+    private static LruCache<Key, Shader> cache = new LruCache<>(DEFAULT_MAX_SIZE);
+
+    private GradientShaderCache() {
+    }
+
+
+    /**
+     * 获取shader，未命中时创建并缓存
+     *
+     * @param type           渐变类型 LINEAR/RADIAL/SWEEP
+     * @param orientation    渐变方向，仅LINEAR使用
+     * @param colors         渐变色
+     * @param gradientRadius 渐变半径，仅RADIAL使用
+     * @param rect           绘制区域
+     */
+    static synchronized Shader obtain(int type, int orientation, int[] colors, float gradientRadius, RectF rect) {
+        Key key = new Key(type, orientation, colors, gradientRadius, rect);
+        Shader shader = cache.get(key);
+        if (shader == null) {
+            shader = create(type, orientation, colors, gradientRadius, rect);
+            cache.put(new Key(type, orientation, colors.clone(), gradientRadius, rect), shader);
+        }
+        return shader;
+    }
+
+
+    /**
+     * 按渐变类型和方向构建shader，方向规则与GradientDrawable一致
+     */
+    static Shader create(int type, int orientation, int[] colors, float gradientRadius, RectF rect) {
+        float cx = rect.centerX();
+        float cy = rect.centerY();
+        switch (type) {
+            case ColorfulButton.RADIAL:
+                float radius = gradientRadius > 0 ? gradientRadius : 0.001F;
+                return new RadialGradient(cx, cy, radius, colors, null, Shader.TileMode.CLAMP);
+            case ColorfulButton.SWEEP:
+                return new SweepGradient(cx, cy, colors, null);
+            default:
+                float x0;
+                float y0;
+                float x1;
+                float y1;
+                switch (orientation) {
+                    case ColorfulButton.TOP_BOTTOM_INT:
+                        x0 = rect.left;
+                        y0 = rect.top;
+                        x1 = x0;
+                        y1 = rect.bottom;
+                        break;
+                    case ColorfulButton.TR_BL_INT:
+                        x0 = rect.right;
+                        y0 = rect.top;
+                        x1 = rect.left;
+                        y1 = rect.bottom;
+                        break;
+                    case ColorfulButton.RIGHT_LEFT_INT:
+                        x0 = rect.right;
+                        y0 = rect.top;
+                        x1 = rect.left;
+                        y1 = y0;
+                        break;
+                    case ColorfulButton.BR_TL_INT:
+                        x0 = rect.right;
+                        y0 = rect.bottom;
+                        x1 = rect.left;
+                        y1 = rect.top;
+                        break;
+                    case ColorfulButton.BOTTOM_TOP_INT:
+                        x0 = rect.left;
+                        y0 = rect.bottom;
+                        x1 = x0;
+                        y1 = rect.top;
+                        break;
+                    case ColorfulButton.BL_TR_INT:
+                        x0 = rect.left;
+                        y0 = rect.bottom;
+                        x1 = rect.right;
+                        y1 = rect.top;
+                        break;
+                    case ColorfulButton.TL_BR_INT:
+                        x0 = rect.left;
+                        y0 = rect.top;
+                        x1 = rect.right;
+                        y1 = rect.bottom;
+                        break;
+                    default:
+                        x0 = rect.left;
+                        y0 = rect.top;
+                        x1 = rect.right;
+                        y1 = y0;
+                        break;
+                }
+                return new LinearGradient(x0, y0, x1, y1, colors, null, Shader.TileMode.CLAMP);
+        }
+    }
+
+
+    /**
+     * 修改缓存容量，会清空已有缓存
+     *
+     * @param maxSize 最多缓存的shader数
+     */
+    public static synchronized void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        cache = new LruCache<>(maxSize);
+    }
+
+
+    /**
+     * 清空缓存及统计
+     */
+    public static synchronized void clear() {
+        cache = new LruCache<>(cache.maxSize());
+    }
+
+
+    public static synchronized int size() {
+        return cache.size();
+    }
+
+
+    public static synchronized int getHitCount() {
+        return cache.hitCount();
+    }
+
+
+    public static synchronized int getMissCount() {
+        return cache.missCount();
+    }
+
+
+    public static synchronized int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+
+    /**
+     * 缓存key，放入缓存的key持有colors的副本
+     */
+    private static final class Key {
+        private final int type;
+        private final int orientation;
+        private final int[] colors;
+        private final float radius;
+        private final float left;
+        private final float top;
+        private final float right;
+        private final float bottom;
+        private final int hash;
+
+        Key(int type, int orientation, int[] colors, float radius, RectF rect) {
+            this.type = type;
+            this.orientation = orientation;
+            this.colors = colors;
+            this.radius = radius;
+            this.left = rect.left;
+            this.top = rect.top;
+            this.right = rect.right;
+            this.bottom = rect.bottom;
+            int result = type;
+            result = 31 * result + orientation;
+            result = 31 * result + Arrays.hashCode(colors);
+            result = 31 * result + Float.floatToIntBits(radius);
+            result = 31 * result + Float.floatToIntBits(left);
+            result = 31 * result + Float.floatToIntBits(top);
+            result = 31 * result + Float.floatToIntBits(right);
+            result = 31 * result + Float.floatToIntBits(bottom);
+            hash = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return hash == that.hash
+                    && type == that.type
+                    && orientation == that.orientation
+                    && Float.compare(radius, that.radius) == 0
+                    && Float.compare(left, that.left) == 0
+                    && Float.compare(top, that.top) == 0
+                    && Float.compare(right, that.right) == 0
+                    && Float.compare(bottom, that.bottom) == 0
+                    && Arrays.equals(colors, that.colors);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
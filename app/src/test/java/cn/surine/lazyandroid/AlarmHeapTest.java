@@ -0,0 +1,93 @@
+package cn.surine.lazyandroid;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * AlarmHeap与排序结果对比
+ */
+public class AlarmHeapTest {
+
+    @Test
+    public void pollsInTimeOrder() {
+        AlarmHeap heap = new AlarmHeap();
+        Random random = new Random(1);
+        int count = 10000;
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = random.nextInt(1000000);
+            heap.put(i, times[i]);
+        }
+        Arrays.sort(times);
+        for (int i = 0; i < count; i++) {
+            assertEquals(times[i], heap.peekTime());
+            int id = heap.poll();
+            assertFalse(heap.contains(id));
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void putUpdatesExistingId() {
+        AlarmHeap heap = new AlarmHeap();
+        heap.put(1, 100);
+        heap.put(2, 200);
+        heap.put(3, 300);
+        heap.put(3, 50);
+        assertEquals(3, heap.size());
+        assertEquals(3, heap.peekId());
+        assertEquals(50, heap.timeOf(3));
+        heap.put(3, 500);
+        assertEquals(1, heap.peekId());
+        assertEquals(500, heap.timeOf(3));
+    }
+
+    @Test
+    public void removeKeepsOrder() {
+        AlarmHeap heap = new AlarmHeap();
+        heap.put(1, 100);
+        heap.put(2, 200);
+        heap.put(3, 300);
+        assertTrue(heap.remove(1));
+        assertFalse(heap.remove(1));
+        assertEquals(-1, heap.timeOf(1));
+        assertEquals(2, heap.poll());
+        assertEquals(3, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void randomOperationsMatchMap() {
+        AlarmHeap heap = new AlarmHeap();
+        HashMap<Integer, Long> expected = new HashMap<>();
+        Random random = new Random(2);
+        for (int step = 0; step < 200000; step++) {
+            int id = random.nextInt(2000);
+            int op = random.nextInt(10);
+            if (op < 6) {
+                long time = random.nextInt(1000000);
+                heap.put(id, time);
+                expected.put(id, time);
+            } else if (op < 9) {
+                assertEquals(expected.remove(id) != null, heap.remove(id));
+            } else if (!heap.isEmpty()) {
+                long min = Long.MAX_VALUE;
+                for (long time : expected.values()) {
+                    min = Math.min(min, time);
+                }
+                assertEquals(min, heap.peekTime());
+                int polled = heap.poll();
+                assertEquals(min, (long) expected.remove(polled));
+            }
+            assertEquals(expected.size(), heap.size());
+        }
+        for (int index = 0; index < heap.size(); index++) {
+            assertEquals((long) expected.get(heap.idAt(index)), heap.timeAt(index));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package cn.surine.lazyandroid;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * AlarmRecurrence与逐分钟查找的结果对比
+ */
+public class AlarmRecurrenceTest {
+
+    private static final String[] EXPRESSIONS = {
+            "* * * * *",
+            "30 8 * * *",
+            "0 9 * * 1-5",
+            "*/15 9-17 * * 1,3,5",
+            "0 0 1 * *",
+            "0 12 13 * 5",
+            "5/20 */6 * 2,8 *",
+            "45 23 31 * 0",
+            "0 2 * * 7",
+    };
+
+    /**
+     * 逐分钟查找的范围，表达式最长约半年触发一次
+     */
+    private static final int BRUTE_FORCE_DAYS = 366;
+
+    private static final String[] ZONES = {"UTC", "Asia/Shanghai", "America/New_York", "Australia/Lord_Howe"};
+
+    @Test
+    public void cronMatchesBruteForce() {
+        Random random = new Random(3);
+        for (String zoneId : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(zoneId);
+            for (String expression : EXPRESSIONS) {
+                AlarmRecurrence recurrence = AlarmRecurrence.cron(expression, zone);
+                for (int i = 0; i < 8; i++) {
+                    long after = 1500000000000L + (long) (random.nextDouble() * 400L * 24 * 3600 * 1000);
+                    assertEquals(expression + " " + zoneId + " after " + after,
+                            bruteForce(expression, zone, after), recurrence.nextAfter(after));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void daylightSavingTransitions() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        AlarmRecurrence recurrence = AlarmRecurrence.cron("30 1 * * *", zone);
+        //2020-11-01 01:30 EDT，一小时后同一本地时间以EST再出现一次，只触发第一次
+        long daylight = 1604208600000L;
+        assertEquals(daylight, recurrence.nextAfter(daylight - 1));
+        assertEquals(daylight + 25 * 3600000L, recurrence.nextAfter(daylight));
+        //2020-03-08 02:30 不存在，与Calendar一致按标准时间换算为03:30 EDT
+        AlarmRecurrence skipped = AlarmRecurrence.cron("30 2 * * *", zone);
+        assertEquals(1583652600000L, skipped.nextAfter(1583643600000L));
+    }
+
+    @Test
+    public void weeklyMatchesCron() {
+        TimeZone zone = TimeZone.getTimeZone("Asia/Shanghai");
+        AlarmRecurrence weekly = AlarmRecurrence.weekly(AlarmRecurrence.MONDAY | AlarmRecurrence.FRIDAY, 7, 30, zone);
+        AlarmRecurrence cron = AlarmRecurrence.cron("30 7 * * 1,5", zone);
+        long time = 1588000000000L;
+        for (int i = 0; i < 100; i++) {
+            long next = weekly.nextAfter(time);
+            assertEquals(cron.nextAfter(time), next);
+            assertTrue(next > time);
+            time = next;
+        }
+    }
+
+    @Test
+    public void intervalSkipsToNextPeriod() {
+        AlarmRecurrence recurrence = AlarmRecurrence.interval(1000, 500);
+        assertEquals(1000, recurrence.nextAfter(0));
+        assertEquals(1500, recurrence.nextAfter(1000));
+        assertEquals(1500, recurrence.nextAfter(1499));
+        assertEquals(3000, recurrence.nextAfter(2999));
+    }
+
+    @Test
+    public void leapDayWaitsForLeapYear() {
+        AlarmRecurrence recurrence = AlarmRecurrence.cron("0 0 29 2 *", TimeZone.getTimeZone("UTC"));
+        //2020-03-01 之后的下一个2月29日是 2024-02-29
+        assertEquals(1709164800000L, recurrence.nextAfter(1583020800000L));
+    }
+
+    @Test
+    public void writeAndReadKeepsRule() throws IOException {
+        AlarmRecurrence[] rules = {
+                AlarmRecurrence.interval(1000, 500),
+                AlarmRecurrence.cron("*/15 9-17 13 * 1,3,5", TimeZone.getTimeZone("America/New_York")),
+        };
+        for (AlarmRecurrence rule : rules) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            rule.writeTo(new DataOutputStream(bytes));
+            AlarmRecurrence read = AlarmRecurrence.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            long time = 1588000000000L;
+            for (int i = 0; i < 50; i++) {
+                long next = rule.nextAfter(time);
+                assertEquals(next, read.nextAfter(time));
+                time = next;
+            }
+        }
+    }
+
+    @Test
+    public void impossibleDateHasNoNextTime() {
+        AlarmRecurrence recurrence = AlarmRecurrence.cron("0 0 30 2 *", TimeZone.getTimeZone("UTC"));
+        assertEquals(AlarmRecurrence.NONE, recurrence.nextAfter(0));
+    }
+
+    /**
+     * 逐分钟查找第一个满足cron表达式的时间
+     * 夏令时开始时跳过的本地时间按标准时间换算，落在跳变后的同一时刻，与AlarmRecurrence一致
+     */
+    private static long bruteForce(String expression, TimeZone zone, long after) {
+        String[] fields = expression.split(" ");
+        //按偏移后的时间读取本地时间的各个字段
+        Calendar local = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        long time = after - after % 60000 + 60000;
+        for (int i = 0; i < BRUTE_FORCE_DAYS * 24 * 60; i++, time += 60000) {
+            int offset = zone.getOffset(time);
+            local.setTimeInMillis(time + offset);
+            if (matchesLocal(fields, local)) {
+                return time;
+            }
+            int gap = offset - zone.getOffset(time - 2 * 3600000L);
+            if (gap > 0 && zone.getOffset(time - gap) != offset) {
+                local.setTimeInMillis(time + offset - gap);
+                if (matchesLocal(fields, local)) {
+                    return time;
+                }
+            }
+        }
+        return AlarmRecurrence.NONE;
+    }
+
+    private static boolean matchesLocal(String[] fields, Calendar calendar) {
+        int minute = calendar.get(Calendar.MINUTE);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+        int day = calendar.get(Calendar.DAY_OF_MONTH);
+        int month = calendar.get(Calendar.MONTH) + 1;
+        int weekday = calendar.get(Calendar.DAY_OF_WEEK) - 1;
+        boolean dayMatch = matches(fields[2], day, 1, 31);
+        boolean weekdayMatch = matches(fields[4], weekday, 0, 7) || (weekday == 0 && matches(fields[4], 7, 0, 7));
+        boolean dateMatch = "*".equals(fields[2]) || "*".equals(fields[4])
+                ? dayMatch && weekdayMatch : dayMatch || weekdayMatch;
+        return matches(fields[0], minute, 0, 59) && matches(fields[1], hour, 0, 23)
+                && matches(fields[3], month, 1, 12) && dateMatch;
+    }
+
+    private static boolean matches(String field, int value, int min, int max) {
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = Integer.parseInt(part.substring(slash + 1));
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if ("*".equals(part)) {
+                from = min;
+                to = max;
+            } else if (part.contains("-")) {
+                from = Integer.parseInt(part.substring(0, part.indexOf('-')));
+                to = Integer.parseInt(part.substring(part.indexOf('-') + 1));
+            } else {
+                from = Integer.parseInt(part);
+                to = slash >= 0 ? max : from;
+            }
+            if (value >= from && value <= to && (value - from) % step == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,203 @@
+package cn.surine.lazyandroid;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * AlarmStore的恢复、墓碑、截断和压缩
+ */
+public class AlarmStoreTest {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 16;
+
+    @Test
+    public void tombstonesOverrideEarlierPuts() throws IOException {
+        File file = newLogFile();
+        AlarmStore store = new AlarmStore(file);
+        try {
+            store.load();
+            store.put(1, 100);
+            store.put(2, 200);
+            store.put(1, 150);
+            store.delete(2);
+            store.putAll(new int[]{3, 4}, new long[]{300, 400}, 2);
+            store.deleteAll(new int[]{3}, 1);
+            store.put(2, 250);
+            assertEquals(8, store.getRecordCount());
+            store.close();
+
+            HashMap<Integer, Long> entries = toMap(store.load());
+            assertEquals(3, entries.size());
+            assertEquals(150L, (long) entries.get(1));
+            assertEquals(250L, (long) entries.get(2));
+            assertEquals(400L, (long) entries.get(4));
+        } finally {
+            store.close();
+            delete(file);
+        }
+    }
+
+    @Test
+    public void tornTailIsTruncated() throws IOException {
+        File file = newLogFile();
+        AlarmStore store = new AlarmStore(file);
+        try {
+            store.load();
+            store.put(1, 100);
+            store.put(2, 200);
+            store.close();
+            //写到一半时崩溃，只留下半条记录
+            RandomAccessFile raw = new RandomAccessFile(file, "rw");
+            raw.seek(raw.length());
+            raw.write(new byte[]{0, 0, 0, 3, 0, 0, 0});
+            raw.close();
+
+            HashMap<Integer, Long> entries = toMap(store.load());
+            assertEquals(2, entries.size());
+            assertEquals(200L, (long) entries.get(2));
+            assertEquals(HEADER_SIZE + 2 * RECORD_SIZE, file.length());
+            //截断后可以继续追加
+            store.put(3, 300);
+            store.close();
+            assertEquals(3, store.load().size);
+        } finally {
+            store.close();
+            delete(file);
+        }
+    }
+
+    @Test
+    public void badChecksumTailIsTruncated() throws IOException {
+        File file = newLogFile();
+        AlarmStore store = new AlarmStore(file);
+        try {
+            store.load();
+            store.put(1, 100);
+            store.put(2, 200);
+            store.delete(1);
+            store.close();
+            //损坏最后一条墓碑的时间字段
+            RandomAccessFile raw = new RandomAccessFile(file, "rw");
+            raw.seek(HEADER_SIZE + 2 * RECORD_SIZE + 4);
+            raw.writeLong(12345);
+            raw.close();
+
+            HashMap<Integer, Long> entries = toMap(store.load());
+            assertEquals(2, entries.size());
+            assertEquals(100L, (long) entries.get(1));
+            assertEquals(200L, (long) entries.get(2));
+            assertEquals(2, store.getRecordCount());
+            assertEquals(HEADER_SIZE + 2 * RECORD_SIZE, file.length());
+        } finally {
+            store.close();
+            delete(file);
+        }
+    }
+
+    @Test
+    public void compactThenReload() throws IOException {
+        File file = newLogFile();
+        AlarmStore store = new AlarmStore(file);
+        try {
+            store.load();
+            for (int i = 0; i < 2000; i++) {
+                store.put(i, i * 10L);
+            }
+            for (int i = 0; i < 2000; i += 2) {
+                store.delete(i);
+            }
+            assertTrue(store.shouldCompact(1000));
+            AlarmStore.Entries live = store.load();
+            store.compact(live.ids, live.times, live.size);
+            assertEquals(1000, store.getRecordCount());
+            assertFalse(store.shouldCompact(1000));
+            assertEquals(HEADER_SIZE + 1000 * RECORD_SIZE, file.length());
+            //压缩后继续追加
+            store.put(1, 11);
+            store.close();
+
+            HashMap<Integer, Long> entries = toMap(store.load());
+            assertEquals(1000, entries.size());
+            assertEquals(11L, (long) entries.get(1));
+            assertEquals(30L, (long) entries.get(3));
+            assertNull(entries.get(2));
+        } finally {
+            store.close();
+            delete(file);
+        }
+    }
+
+    @Test
+    public void restoresHundredThousandEntries() throws IOException {
+        File file = newLogFile();
+        AlarmStore store = new AlarmStore(file);
+        try {
+            store.load();
+            int count = 100000;
+            Random random = new Random(9);
+            int[] ids = new int[count];
+            long[] times = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = i;
+                times[i] = 1588000000000L + random.nextInt(1000000000);
+            }
+            store.putAll(ids, times, count);
+            store.close();
+
+            AlarmStore.Entries entries = store.load();
+            assertEquals(count, entries.size);
+            HashMap<Integer, Long> restored = toMap(entries);
+            for (int i = 0; i < count; i++) {
+                assertEquals(times[i], (long) restored.get(i));
+            }
+        } finally {
+            store.close();
+            delete(file);
+        }
+    }
+
+    @Test
+    public void unknownFileStartsOver() throws IOException {
+        File file = newLogFile();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.writeLong(42);
+        raw.writeLong(42);
+        raw.close();
+        AlarmStore store = new AlarmStore(file);
+        try {
+            assertEquals(0, store.load().size);
+            assertEquals(HEADER_SIZE, file.length());
+        } finally {
+            store.close();
+            delete(file);
+        }
+    }
+
+
+    private static HashMap<Integer, Long> toMap(AlarmStore.Entries entries) {
+        HashMap<Integer, Long> map = new HashMap<>();
+        for (int i = 0; i < entries.size; i++) {
+            assertNull("duplicate id " + entries.ids[i], map.put(entries.ids[i], entries.times[i]));
+        }
+        return map;
+    }
+
+    private static File newLogFile() throws IOException {
+        File file = File.createTempFile("alarm_store", ".log");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void delete(File file) {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+}
@@ -0,0 +1,88 @@
+package cn.surine.lazyandroid;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * AlarmTimeParser与SimpleDateFormat的结果对比
+ */
+public class AlarmTimeParserTest {
+
+    private static final String[] ZONES = {
+            "UTC", "Asia/Shanghai", "America/New_York", "Europe/London", "Australia/Lord_Howe", "America/Sao_Paulo"
+    };
+
+    @Test
+    public void matchesSimpleDateFormat() throws ParseException {
+        Random random = new Random(42);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            format.setTimeZone(zone);
+            for (int i = 0; i < 20000; i++) {
+                String text = randomTime(random);
+                assertEquals(text + " " + id, format.parse(text).getTime(), AlarmTimeParser.parse(text, zone));
+            }
+        }
+    }
+
+    @Test
+    public void matchesSimpleDateFormatAroundDaylightSaving() throws ParseException {
+        String[][] cases = {
+                {"America/New_York", "2020-03-08 02:30"},
+                {"America/New_York", "2020-11-01 01:30"},
+                {"Europe/London", "2020-03-29 01:30"},
+                {"Europe/London", "2020-10-25 01:30"},
+                {"Australia/Lord_Howe", "2020-10-04 02:15"},
+                {"Australia/Lord_Howe", "2020-04-05 01:45"},
+        };
+        for (String[] item : cases) {
+            TimeZone zone = TimeZone.getTimeZone(item[0]);
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            format.setTimeZone(zone);
+            assertEquals(item[1] + " " + item[0], format.parse(item[1]).getTime(), AlarmTimeParser.parse(item[1], zone));
+        }
+    }
+
+    @Test
+    public void acceptsSingleDigitFields() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        assertEquals(AlarmTimeParser.parse("2020-05-08 09:05", utc), AlarmTimeParser.parse("2020-5-8 9:5", utc));
+    }
+
+    @Test
+    public void reportsErrorOffsetAndReason() {
+        assertError("", 0, AlarmTimeFormatException.REASON_EMPTY);
+        assertError("20x0-05-08 09:05", 2, AlarmTimeFormatException.REASON_EXPECTED_DIGIT);
+        assertError("2020/05/08 09:05", 4, AlarmTimeFormatException.REASON_EXPECTED_SEPARATOR);
+        assertError("2020-13-08 09:05", 5, AlarmTimeFormatException.REASON_OUT_OF_RANGE);
+        assertError("2019-02-29 09:05", 8, AlarmTimeFormatException.REASON_OUT_OF_RANGE);
+        assertError("2020-05-08 24:00", 11, AlarmTimeFormatException.REASON_OUT_OF_RANGE);
+        assertError("2020-05-08 09:05:00", 16, AlarmTimeFormatException.REASON_TRAILING_TEXT);
+        assertEquals(AlarmTimeParser.INVALID, AlarmTimeParser.tryParse("2020-05-08", TimeZone.getDefault()));
+    }
+
+    private static void assertError(String text, int offset, int reason) {
+        try {
+            AlarmTimeParser.parse(text, TimeZone.getDefault());
+            fail(text);
+        } catch (AlarmTimeFormatException e) {
+            assertEquals(text, offset, e.getErrorOffset());
+            assertEquals(text, reason, e.getReason());
+        }
+    }
+
+    private static String randomTime(Random random) {
+        int year = 1971 + random.nextInt(130);
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(28);
+        return String.format(Locale.ROOT, "%04d-%02d-%02d %02d:%02d", year, month, day, random.nextInt(24), random.nextInt(60));
+    }
+}
@@ -0,0 +1,52 @@
+package cn.surine.lazyandroid;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * IntIntMap与HashMap对比，包括删除后的回填
+ */
+public class IntIntMapTest {
+
+    @Test
+    public void matchesHashMap() {
+        IntIntMap map = new IntIntMap();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(4);
+        for (int step = 0; step < 300000; step++) {
+            //key范围小，冲突和删除后的回填都会频繁发生；包含0和负数
+            int key = random.nextInt(4000) - 2000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                int value = random.nextInt();
+                map.put(key, value);
+                expected.put(key, value);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -2000; key < 2000; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value != null, map.containsKey(key));
+            assertEquals(value == null ? -1 : value, map.get(key, -1));
+        }
+    }
+
+    @Test
+    public void clearRemovesAll() {
+        IntIntMap map = new IntIntMap(4);
+        for (int i = 0; i < 100; i++) {
+            map.put(i * 64, i);
+        }
+        assertEquals(100, map.size());
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(0));
+        map.put(64, 1);
+        assertEquals(1, map.get(64, -1));
+    }
+}
@@ -0,0 +1,315 @@
+package cn.surine.lazyandroid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用假时钟验证TimerWheel的执行时间和顺序
+ */
+public class TimerWheelTest {
+
+    private static final class FakeClock implements TimerWheel.Clock {
+        long now = 1000;
+
+        @Override
+        public long millis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void firesAtDeadlineAndNeverEarly() {
+        FakeClock clock = new FakeClock();
+        TimerWheel wheel = new TimerWheel(clock, 10);
+        final List<String> fired = new ArrayList<>();
+        wheel.schedule(record(fired, "a"), 25, TimeUnit.MILLISECONDS);
+        wheel.schedule(record(fired, "b"), 5, TimeUnit.SECONDS);
+
+        clock.now += 20;
+        assertEquals(0, wheel.advance());
+        clock.now += 10;
+        assertEquals(1, wheel.advance());
+        assertEquals("a", fired.get(0));
+
+        clock.now += 4960;
+        assertEquals(0, wheel.advance());
+        clock.now += 10;
+        assertEquals(1, wheel.advance());
+        assertEquals("b", fired.get(1));
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void cancelRemovesTimer() {
+        FakeClock clock = new FakeClock();
+        TimerWheel wheel = new TimerWheel(clock, 10);
+        final List<String> fired = new ArrayList<>();
+        TimerWheel.Timeout timeout = wheel.schedule(record(fired, "a"), 100, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        clock.now += 1000;
+        assertEquals(0, wheel.advance());
+        assertTrue(fired.isEmpty());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void randomTimersFireInTheirTick() {
+        FakeClock clock = new FakeClock();
+        final long tick = 10;
+        TimerWheel wheel = new TimerWheel(clock, tick);
+        Random random = new Random(11);
+        int count = 200000;
+        final long[] deadlines = new long[count];
+        final long[] firedAt = new long[count];
+        final FakeClock time = clock;
+        TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[count];
+        for (int i = 0; i < count; i++) {
+            //覆盖所有层，以及超出时间轮跨度的定时器
+            long delay = (long) Math.pow(10, random.nextDouble() * 8.5);
+            deadlines[i] = clock.now + delay;
+            final int index = i;
+            timeouts[i] = wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    firedAt[index] = time.now;
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        int cancelled = 0;
+        for (int i = 0; i < count; i += 7) {
+            assertTrue(timeouts[i].cancel());
+            cancelled++;
+        }
+        assertEquals(count - cancelled, wheel.getPendingCount());
+
+        long end = clock.now + 400000000L;
+        int total = 0;
+        while (clock.now < end) {
+            //步长不固定，模拟线程被延迟唤醒
+            clock.now += 1 + random.nextInt(5000);
+            total += wheel.advance();
+        }
+        assertEquals(count - cancelled, total);
+        for (int i = 0; i < count; i++) {
+            if (i % 7 == 0) {
+                assertEquals(0, firedAt[i]);
+            } else {
+                assertTrue("early " + i, firedAt[i] >= deadlines[i]);
+            }
+        }
+    }
+
+    @Test
+    public void exactStepsFireWithinOneTick() {
+        FakeClock clock = new FakeClock();
+        TimerWheel wheel = new TimerWheel(clock, 10);
+        Random random = new Random(5);
+        int count = 20000;
+        final long[] firedAt = new long[count];
+        long[] deadlines = new long[count];
+        final FakeClock time = clock;
+        for (int i = 0; i < count; i++) {
+            long delay = random.nextInt(3 * 3600 * 1000);
+            deadlines[i] = clock.now + delay;
+            final int index = i;
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    firedAt[index] = time.now;
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        for (long step = 0; step < 3 * 3600 * 100 + 2; step++) {
+            clock.now += 10;
+            wheel.advance();
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(firedAt[i] >= deadlines[i]);
+            assertTrue("late " + i, firedAt[i] - deadlines[i] < 20);
+        }
+    }
+
+    @Test
+    public void handOffOnlyTimersWithAlarmId() {
+        FakeClock clock = new FakeClock();
+        TimerWheel wheel = new TimerWheel(clock, 10);
+        final List<String> fired = new ArrayList<>();
+        wheel.schedule(1, record(fired, "alarm"), 60, TimeUnit.SECONDS);
+        wheel.schedule(record(fired, "local"), 30, TimeUnit.SECONDS);
+        TimerWheel.Timeout cancelled = wheel.schedule(2, record(fired, "cancelled"), 90, TimeUnit.SECONDS);
+        cancelled.cancel();
+
+        clock.now += 10000;
+        final int[][] ids = new int[1][];
+        final long[][] times = new long[1][];
+        assertEquals(1, wheel.handOff(new TimerWheel.HandOffListener() {
+            @Override
+            public void onHandOff(int[] alarmIds, long[] triggerAtMillis) {
+                ids[0] = alarmIds;
+                times[0] = triggerAtMillis;
+            }
+        }));
+        assertEquals(1, ids[0].length);
+        assertEquals(1, ids[0][0]);
+        long remaining = times[0][0] - System.currentTimeMillis();
+        assertTrue(remaining > 49000 && remaining <= 50000);
+        assertEquals(1, wheel.getPendingCount());
+
+        clock.now += 60000;
+        assertEquals(1, wheel.advance());
+        assertEquals("local", fired.get(0));
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void cancelHandedOffTimer() {
+        FakeClock clock = new FakeClock();
+        TimerWheel wheel = new TimerWheel(clock, 10);
+        final List<String> fired = new ArrayList<>();
+        TimerWheel.Timeout timeout = wheel.schedule(1, record(fired, "alarm"), 60, TimeUnit.SECONDS);
+        assertEquals(1, wheel.handOff(new TimerWheel.HandOffListener() {
+            @Override
+            public void onHandOff(int[] alarmIds, long[] triggerAtMillis) {
+            }
+        }));
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        //已取消的不会被收回
+        assertEquals(0, wheel.reclaimFromAlarmManager(null));
+        clock.now += 120000;
+        assertEquals(0, wheel.advance());
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    public void tasksCanScheduleMoreTimers() {
+        final FakeClock clock = new FakeClock();
+        final TimerWheel wheel = new TimerWheel(clock, 10);
+        final List<String> fired = new ArrayList<>();
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired.add("first");
+                wheel.schedule(record(fired, "second"), 100, TimeUnit.MILLISECONDS);
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        clock.now += 100;
+        wheel.advance();
+        clock.now += 100;
+        wheel.advance();
+        assertEquals(2, fired.size());
+        assertEquals("second", fired.get(1));
+    }
+
+    @Test
+    public void throwingTaskDoesNotDropTheRest() {
+        FakeClock clock = new FakeClock();
+        TimerWheel wheel = new TimerWheel(clock, 10);
+        final List<String> fired = new ArrayList<>();
+        wheel.schedule(record(fired, "before"), 50, TimeUnit.MILLISECONDS);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("boom");
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        wheel.schedule(record(fired, "after"), 50, TimeUnit.MILLISECONDS);
+        clock.now += 50;
+        try {
+            wheel.advance();
+            fail("exception was swallowed");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals(2, fired.size());
+        assertEquals("before", fired.get(0));
+        assertEquals("after", fired.get(1));
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void scheduleAfterLongIdleFiresOnTime() {
+        FakeClock clock = new FakeClock();
+        TimerWheel wheel = new TimerWheel(clock, 10);
+        final List<String> fired = new ArrayList<>();
+        //空闲一天后添加，不会因为从旧位置计算而提前或延后
+        clock.now += 24 * 3600 * 1000L;
+        wheel.schedule(record(fired, "a"), 25, TimeUnit.MILLISECONDS);
+        clock.now += 20;
+        assertEquals(0, wheel.advance());
+        clock.now += 10;
+        assertEquals(1, wheel.advance());
+        assertEquals("a", fired.get(0));
+    }
+
+    @Test
+    public void restartLeavesOneWorker() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel();
+        wheel.start();
+        wheel.stop();
+        wheel.start();
+        assertEquals(1, countWorkers());
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        wheel.stop();
+        assertEquals(0, countWorkers());
+    }
+
+    @Test
+    public void workerSurvivesThrowingTask() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel();
+        wheel.start();
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("boom");
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 60, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        wheel.stop();
+        assertEquals(0, countWorkers());
+    }
+
+
+    private static int countWorkers() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("TimerWheel".equals(thread.getName()) && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Runnable record(final List<String> fired, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                fired.add(name);
+            }
+        };
+    }
+}